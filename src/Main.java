@@ -1,8 +1,27 @@
 //package am.aua.chess;
 
+import bench.CoreBenchmark;
 import cli.ChessConsole;
+import cli.PerftRunner;
+import cli.RegressionRunner;
+import core.Chess;
+import engine.SearchLimits;
+import puzzles.PuzzleDatabase;
+import puzzles.PuzzleMiner;
+import puzzles.PuzzleSolver;
+import server.GameServer;
+import server.LoadGenerator;
 import ui.ChessUI;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
 public class Main {
     public static void main(String[] args){
         if (args.length == 0) {
@@ -10,6 +29,59 @@ public class Main {
         } else if (args[0].equals("-console")) {
             ChessConsole chessConsole = new ChessConsole();
             chessConsole.run();
+        } else if (args[0].equals("-perft") && args.length >= 2) {
+            // -perft <depth> [<arrangement> <turn> | <fen>] or -perft verify
+            PerftRunner perftRunner = new PerftRunner();
+            if (args[1].equals("verify")) {
+                if (!perftRunner.verify())
+                    System.exit(1);
+            }
+            else if (args.length >= 3 && args[2].indexOf('/') >= 0)
+                perftRunner.run(String.join(" ", Arrays.copyOfRange(args, 2, args.length)), Integer.parseInt(args[1]));
+            else if (args.length >= 4)
+                perftRunner.run(args[2], Chess.PieceColor.valueOf(args[3]), Integer.parseInt(args[1]));
+            else
+                perftRunner.run(Integer.parseInt(args[1]));
+        } else if (args[0].equals("-verify")) {
+            // -verify: the regression checks
+            if (!new RegressionRunner().verify())
+                System.exit(1);
+        } else if (args[0].equals("-bench")) {
+            // -bench [<csv file>]
+            CoreBenchmark benchmark = new CoreBenchmark();
+            benchmark.run(args.length >= 2 ? args[1] : null);
+        } else if (args[0].equals("-solve")) {
+            // -solve [<milliseconds per puzzle> [<threads>]]
+            SearchLimits limits = SearchLimits.time(args.length >= 2 ? Long.parseLong(args[1]) : 500);
+            PuzzleSolver solver = args.length >= 3
+                    ? new PuzzleSolver(limits, Integer.parseInt(args[2]))
+                    : new PuzzleSolver(limits);
+            solver.run(new PuzzleDatabase());
+        } else if (args[0].equals("-mine") && args.length >= 3) {
+            // -mine <pgn file> <puzzle file> [<nodes per position> [<threads>]]
+            SearchLimits limits = SearchLimits.nodes(args.length >= 4 ? Long.parseLong(args[3]) : 50_000);
+            int threads = args.length >= 5 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            PuzzleMiner miner = new PuzzleMiner(limits, threads, new PuzzleDatabase().getIndex());
+            try (Reader pgn = new BufferedReader(new FileReader(args[1]), 1 << 16);
+                 Writer output = new BufferedWriter(new FileWriter(args[2]))) {
+                miner.mine(pgn, output);
+            } catch (IOException e) {
+                System.out.println("Cannot mine puzzles: " + e.getMessage());
+            }
+        } else if (args[0].equals("-server")) {
+            // -server [<port>]
+            int port = args.length >= 2 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+            try (GameServer server = new GameServer(port)) {
+                System.out.println("Serving games on port " + server.getPort());
+                server.run();
+            } catch (IOException e) {
+                System.out.println("Cannot start the server: " + e.getMessage());
+            }
+        } else if (args[0].equals("-load") && args.length >= 2) {
+            // -load <host> [<port> [<clients> [<seconds>]]]
+            int port = args.length >= 3 ? Integer.parseInt(args[2]) : GameServer.DEFAULT_PORT;
+            int clients = args.length >= 4 ? Integer.parseInt(args[3]) : 100;
+            new LoadGenerator(args[1], port, clients).run(args.length >= 5 ? Long.parseLong(args[4]) : 10);
         }
     }
 }
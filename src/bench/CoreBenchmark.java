@@ -0,0 +1,196 @@
+package bench;
+
+import core.Chess;
+import core.IllegalArrangementException;
+import core.King;
+import core.Move;
+import core.MoveList;
+import core.Moves;
+import core.Piece;
+import core.Position;
+import puzzles.Puzzle;
+import puzzles.PuzzleDatabase;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * Throughput and allocation benchmarks for the core move generation and legality checks.
+ * <p>
+ * Every benchmark is warmed up first and then measured over several fixed-length iterations
+ * on the same set of positions, cycling through them. Allocation is read from the per-thread
+ * allocation counter of the JVM, so it is reported as bytes per operation without a profiler.
+ * Results can be written as CSV to compare runs across commits.
+ */
+public class CoreBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long WARMUP_NANOS = 200_000_000L;
+    private static final long MEASUREMENT_NANOS = 500_000_000L;
+    //operations between two clock reads
+    private static final int BATCH = 64;
+
+    private static final String[][] POSITIONS = {
+            {"rnbqkbnr" + "pppppppp" + "--------" + "--------"
+                    + "--------" + "--------" + "PPPPPPPP" + "RNBQKBNR", "WHITE"},
+            {"r---k--r" + "p-ppqpb-" + "bn--pnp-" + "---PN---"
+                    + "-p--P---" + "--N--Q-p" + "PPPBBPPP" + "R---K--R", "WHITE"},
+            {"r-bqkb-r" + "pppp-ppp" + "--n--n--" + "----p---"
+                    + "--B-P---" + "-----N--" + "PPPP-PPP" + "RNBQK--R", "BLACK"},
+            {"--------" + "--p-----" + "---p----" + "LP-----r"
+                    + "-R---p-l" + "--------" + "----P-P-" + "--------", "WHITE"}
+    };
+
+    private interface Operation {
+        long run(Chess chess, Position[] squares, Move move);
+    }
+
+    private final ArrayList<Chess> games;
+    private final ArrayList<Move> firstMoves;
+    private final ArrayList<Position[]> occupiedSquares;
+    private final ArrayList<String> results;
+    //results are folded in here, so that the JIT cannot drop the measured work
+    private volatile long sink;
+
+    public CoreBenchmark() {
+        this.games = new ArrayList<>();
+        this.firstMoves = new ArrayList<>();
+        this.occupiedSquares = new ArrayList<>();
+        this.results = new ArrayList<>();
+    }
+
+    public void run(String csvPath) {
+        for (String[] position : POSITIONS)
+            addPosition(position[0], Chess.PieceColor.valueOf(position[1]));
+
+        PuzzleDatabase database = new PuzzleDatabase();
+        for (int i = 0; i < database.getSize(); i++) {
+            Puzzle puzzle = database.getPuzzle(i);
+            addPosition(puzzle.getArrangement(), puzzle.getTurn());
+        }
+
+        System.out.println("Positions: " + this.games.size());
+        System.out.printf("%-28s %16s %14s %12s%n", "Benchmark", "ops/s", "ns/op", "B/op");
+
+        measure("reachableFrom", (chess, squares, move) -> {
+            long result = 0;
+            for (Position square : squares)
+                result += chess.reachableFrom(square).length;
+            return result;
+        });
+        measure("performMove", (chess, squares, move) -> {
+            boolean success = chess.performMove(move);
+            if (success)
+                chess.unmakeMove();
+            return success ? 1 : 0;
+        });
+        measure("isKingUnderAttack", (chess, squares, move) ->
+                chess.isKingUnderAttack(chess.getTurn()) ? 1 : 0);
+        measure("getAllDestinationsByColor", (chess, squares, move) ->
+                chess.getAllDestinationsByColor(chess.getTurn()).length);
+        measure("King.allDestinations", (chess, squares, move) -> {
+            for (Position square : squares) {
+                Piece piece = chess.getPieceAt(square);
+                if (piece instanceof King && piece.getPieceColor() == chess.getTurn())
+                    return piece.allDestinations(chess, square, false).length;
+            }
+            return 0;
+        });
+        measure("clone", (chess, squares, move) -> chess.clone().getTurn().ordinal());
+
+        if (csvPath != null)
+            writeCsv(csvPath);
+    }
+
+    private void addPosition(String arrangement, Chess.PieceColor turn) {
+        try {
+            Chess chess = new Chess(arrangement, turn);
+            MoveList moves = new MoveList();
+            if (chess.generateLegalMoves(moves) == 0)
+                return;
+
+            ArrayList<Position> squares = new ArrayList<>();
+            for (int i = 0; i < Chess.BOARD_RANKS; i++)
+                for (int j = 0; j < Chess.BOARD_FILES; j++) {
+                    Position current = Position.generateFromRankAndFile(i, j);
+                    if (!chess.isEmpty(current))
+                        squares.add(current);
+                }
+
+            this.games.add(chess);
+            this.firstMoves.add(Moves.toMove(moves.get(0)));
+            this.occupiedSquares.add(squares.toArray(new Position[]{}));
+        } catch (IllegalArrangementException e) {
+            System.out.println("Skipping position: " + e.getMessage());
+        }
+    }
+
+    private void measure(String name, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            iterate(operation, WARMUP_NANOS);
+
+        double[] opsPerSecond = new double[MEASUREMENT_ITERATIONS];
+        double bytesPerOp = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long operations = iterate(operation, MEASUREMENT_NANOS);
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            opsPerSecond[i] = operations / (elapsed / 1e9);
+            bytesPerOp += (double) allocated / operations / MEASUREMENT_ITERATIONS;
+        }
+
+        double mean = 0;
+        for (double value : opsPerSecond)
+            mean += value / MEASUREMENT_ITERATIONS;
+        double variance = 0;
+        for (double value : opsPerSecond)
+            variance += (value - mean) * (value - mean) / MEASUREMENT_ITERATIONS;
+
+        System.out.printf("%-28s %16.0f %14.1f %12.1f   (+- %.1f%%)%n",
+                name, mean, 1e9 / mean, bytesPerOp, 100 * Math.sqrt(variance) / mean);
+        this.results.add(String.format("%s,%.0f,%.1f,%.1f", name, mean, 1e9 / mean, bytesPerOp));
+    }
+
+    private long iterate(Operation operation, long durationNanos) {
+        long operations = 0;
+        long result = 0;
+        long end = System.nanoTime() + durationNanos;
+        int index = 0;
+
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < BATCH; i++) {
+                result += operation.run(this.games.get(index), this.occupiedSquares.get(index),
+                        this.firstMoves.get(index));
+                index = (index + 1) % this.games.size();
+            }
+            operations += BATCH;
+        }
+
+        this.sink += result;
+        return operations;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    private void writeCsv(String path) {
+        try {
+            PrintWriter pw = new PrintWriter(path);
+            pw.println("benchmark,ops_per_second,ns_per_op,bytes_per_op");
+            for (String result : this.results)
+                pw.println(result);
+            pw.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot write the benchmark results.");
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package bench;
+
+/**
+ * Percentiles of measured latencies, shared by everything that reports them.
+ */
+public final class Percentiles {
+    private Percentiles() {
+    }
+
+    /**
+     * Picks a percentile with the nearest-rank method: the smallest value that is at least as
+     * large as the given percentage of all values.
+     * @param sorted The values in ascending order.
+     * @param percent The percentile, from 1 to 100.
+     * @return The percentile, or 0 if there are no values.
+     */
+    public static long of(long[] sorted, int percent) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
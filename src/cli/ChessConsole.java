@@ -1,16 +1,25 @@
 package cli;
 
+import core.Board;
 import core.Chess;
 import core.Move;
+import core.Moves;
 import core.Position;
+import engine.ParallelSearch;
+import engine.SearchLimits;
+import engine.SearchResult;
 import puzzles.Puzzle;
 import puzzles.PuzzleDatabase;
 
 import java.util.Scanner;
 
 public class ChessConsole {
+    private static final long ENGINE_TIME_MILLIS = 100;
+
     private Chess game;
     private PuzzleDatabase database;
+    //created on the first engine command, since it holds a thread pool and a large table
+    private ParallelSearch engine;
 
     public ChessConsole() {
         database = new PuzzleDatabase();
@@ -83,6 +92,19 @@ public class ChessConsole {
                     continue;
                 }
 
+                if (input[0].equals("engine")) {
+                    // lets the engine make the move for the side to move, searching on all cores
+                    if (engine == null)
+                        engine = new ParallelSearch();
+                    SearchResult result = engine.search(game, SearchLimits.time(ENGINE_TIME_MILLIS));
+                    if (result != null && result.getMove() != null) {
+                        System.out.println("Engine plays " + result.getMove() + " (" + result + ")");
+                        game.performMove(result.getMove());
+                    }
+                    print();
+                    continue;
+                }
+
                 p1 = Position.generateFromString(input[0]);
 
                 if (p1 == null || game.getPieceAt(p1) == null) {
@@ -97,7 +119,8 @@ public class ChessConsole {
                         System.out.println("That piece belongs to the opponent.");
                     print(p1);
                 }
-                else if (input.length == 2) {
+                else if (input.length == 2 || input.length == 3) {
+                    // an optional third word names the piece a pawn is promoted to, e.g. "e7 e8 n"
                     if (game.getPieceAt(p1).getPieceColor() != game.getTurn()) {
                         System.out.println("That piece belongs to the opponent.");
                         continue;
@@ -109,8 +132,9 @@ public class ChessConsole {
 
                     // checking if p1 != null is not necessary
                     // its negation is already checked
-                    if (p2 != null) {
-                        Move m = new Move(p1, p2);
+                    int promotion = input.length == 3 ? Moves.promotionOf(input[2]) : Board.NO_PIECE;
+                    if (p2 != null && (input.length == 2 || promotion != Board.NO_PIECE)) {
+                        Move m = new Move(p1, p2, promotion);
                         success = game.performMove(m);
                     }
                     if (!success)
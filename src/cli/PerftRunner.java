@@ -0,0 +1,102 @@
+package cli;
+
+import core.Chess;
+import core.Fen;
+import core.IllegalArrangementException;
+import core.MoveList;
+import core.Moves;
+import core.Perft;
+
+public class PerftRunner {
+    //Published counts of standard test positions, covering castling, en passant and promotions.
+    private static final String[][] REFERENCE_POSITIONS = {
+            {"initial position", Fen.INITIAL, "20 400 8902 197281 4865609"},
+            {"kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    "48 2039 97862 4085603"},
+            {"rook endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "14 191 2812 43238 674624"},
+            {"promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    "6 264 9467 422333"},
+            {"discovered checks", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    "44 1486 62379 2103487"}
+    };
+
+    /**
+     * Prints the count below every root move, the total and the counting speed.
+     */
+    public void run(String arrangement, Chess.PieceColor turn, int depth) {
+        try {
+            run(new Chess(arrangement, turn), depth);
+        } catch (IllegalArrangementException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public void run(String fen, int depth) {
+        try {
+            run(Fen.parse(fen), depth);
+        } catch (IllegalArrangementException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public void run(int depth) {
+        run(Fen.INITIAL, depth);
+    }
+
+    private void run(Chess chess, int depth) {
+        MoveList rootMoves = new MoveList();
+
+        long start = System.nanoTime();
+        long[] counts = new Perft(chess).divide(depth, rootMoves);
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            System.out.println(Moves.toString(rootMoves.get(i)) + ": " + counts[i]);
+            total += counts[i];
+        }
+        System.out.println();
+        printResult(total, elapsed);
+    }
+
+    /**
+     * Counts every reference position to every published depth.
+     * @return True, if all counts match.
+     */
+    public boolean verify() {
+        boolean allPassed = true;
+        long totalNodes = 0, totalTime = 0;
+
+        for (String[] reference : REFERENCE_POSITIONS) {
+            try {
+                Perft perft = new Perft(Fen.parse(reference[1]));
+                String[] expected = reference[2].split(" ");
+
+                for (int depth = 1; depth <= expected.length; depth++) {
+                    long start = System.nanoTime();
+                    long nodes = perft.count(depth);
+                    totalTime += System.nanoTime() - start;
+                    totalNodes += nodes;
+
+                    boolean passed = nodes == Long.parseLong(expected[depth - 1]);
+                    allPassed &= passed;
+                    System.out.println((passed ? "ok     " : "FAILED ") + reference[0]
+                            + ", depth " + depth + ": " + nodes + " (expected " + expected[depth - 1] + ")");
+                }
+            } catch (IllegalArrangementException e) {
+                System.out.println("FAILED " + reference[0] + ": " + e.getMessage());
+                allPassed = false;
+            }
+        }
+
+        System.out.println();
+        printResult(totalNodes, totalTime);
+        return allPassed;
+    }
+
+    private void printResult(long nodes, long elapsedNanos) {
+        System.out.println("Nodes: " + nodes);
+        System.out.println("Time: " + elapsedNanos / 1_000_000 + " ms");
+        System.out.println("Nodes per second: " + (long) (nodes / Math.max(elapsedNanos / 1e9, 1e-9)));
+    }
+}
@@ -0,0 +1,122 @@
+package cli;
+
+import core.Chess;
+import core.Fen;
+import core.IllegalArrangementException;
+import core.Moves;
+import core.PgnReader;
+import engine.Evaluator;
+import engine.Search;
+import engine.SearchLimits;
+import puzzles.MalformedPuzzleException;
+import puzzles.Puzzle;
+import puzzles.PuzzleJournal;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks for bugs that have been fixed, each by recreating the situation that caused it. Like
+ * the perft verification, it prints one line per check.
+ */
+public class RegressionRunner {
+    private interface Check {
+        boolean passes() throws Exception;
+    }
+
+    private boolean allPassed;
+
+    /**
+     * Runs every check.
+     * @return True, if all of them pass.
+     */
+    public boolean verify() {
+        this.allPassed = true;
+        check("journal record torn by a crash", RegressionRunner::tornJournalRecord);
+        check("castling written with zeros in PGN", RegressionRunner::castlingWithZeros);
+        check("pawns on their own back rank", RegressionRunner::pawnsOnBackRank);
+        return this.allPassed;
+    }
+
+    private void check(String name, Check check) {
+        boolean passed;
+        String failure = "";
+        try {
+            passed = check.passes();
+        } catch (Exception e) {
+            passed = false;
+            failure = ": " + e;
+        }
+        this.allPassed &= passed;
+        System.out.println((passed ? "ok     " : "FAILED ") + name + failure);
+    }
+
+    //an append after a torn record must neither be lost nor lose the records before the tear
+    private static boolean tornJournalRecord() throws IOException, MalformedPuzzleException {
+        Path path = Files.createTempFile("journal", ".txt");
+        try {
+            PuzzleJournal journal = new PuzzleJournal(path);
+            Puzzle first = new Puzzle("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1,EASY", "White mates in 1.");
+            Puzzle torn = new Puzzle("r5k1/5ppp/8/8/8/8/5PPP/6K1 b - - 0 1,EASY", "Schwarz setzt in einem Zug matt, T\u00fcrme.");
+            Puzzle last = new Puzzle("8/8/8/8/8/5k2/5p2/5K2 b - - 0 1,MEDIUM", "Black wins.");
+
+            journal.append(List.of(first, torn));
+            //a crash during the append cuts the second record inside the two bytes of its last
+            //non-ASCII character
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - "rme.\n".length() - 1);
+            }
+            journal.append(List.of(last));
+
+            List<Puzzle> read = journal.read();
+            return read.size() == 2 && journal.getSkipped() == 1
+                    && read.get(0).toString().equals(first.toString())
+                    && read.get(1).toString().equals(last.toString());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    //the digits of "0-0" used to be taken for a move number
+    private static boolean castlingWithZeros() throws IOException {
+        String moves = "1. d4 d5 2. Nc3 Nc6 3. Bf4 Bf5 4. Qd2 Qd7 5. %s e6 6. e3 Nf6 7. Nf3 Be7 8. h3 %s *\n\n";
+        String pgn = String.format(moves, "0-0-0", "0-0") + String.format(moves, "O-O-O", "O-O");
+        ArrayList<String> positions = new ArrayList<>();
+        boolean[] failed = new boolean[1];
+
+        new PgnReader(new StringReader(pgn)).readAll(new PgnReader.GameVisitor() {
+            private String last;
+
+            public void move(Chess chess, int move) {
+                this.last = Fen.toFen(chess);
+            }
+
+            public void endGame(String result) {
+                positions.add(this.last);
+            }
+
+            public void error(long line, String message) {
+                failed[0] = true;
+            }
+        });
+        //both spellings reach the same position, with both sides castled
+        return !failed[0] && positions.size() == 2 && positions.get(0).equals(positions.get(1))
+                && positions.get(0).startsWith("r4rk1/") && positions.get(0).contains("/2KR");
+    }
+
+    //the passed pawn bonus was looked up one rank behind the back rank
+    private static boolean pawnsOnBackRank() throws IllegalArrangementException {
+        //the same position for either side to move, mirrored
+        Chess white = Fen.parse("4k3/8/8/8/8/8/8/P3K3 w - - 0 1");
+        Chess black = Fen.parse("p3k3/8/8/8/8/8/8/4K3 b - - 0 1");
+        return Evaluator.evaluate(white) == Evaluator.evaluate(black)
+                && new Search(white).search(SearchLimits.depth(3)).getBestMove() != Moves.NONE
+                && new Search(black).search(SearchLimits.depth(3)).getBestMove() != Moves.NONE;
+    }
+}
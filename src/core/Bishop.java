@@ -1,7 +1,5 @@
 package core;
 
-import java.util.ArrayList;
-
 public class Bishop extends Piece {
     public Bishop() {
         super();
@@ -19,37 +17,15 @@ public class Bishop extends Piece {
     }
 
     public Position[] allDestinations(Chess chess, Position p, boolean includeDefending) {
-        return Bishop.reachablePositions(chess, p, includeDefending);
+        return Bitboards.toPositions(Bishop.reachableSquares(chess.getBitboards(), Bitboards.square(p),
+                this.getPieceColor().ordinal(), includeDefending));
     }
 
-    static Position[] reachablePositions(Chess chess, Position p, boolean includeDefending) {
+    static long reachableSquares(Board board, int square, int color, boolean includeDefending) {
         //Accessed by Queens, does not have to be public
-        ArrayList<Position> result = new ArrayList<>();
-
-        int[] rankOffsets = {1, -1, 1, -1};
-        int[] fileOffsets = {1, 1, -1, -1};
-
-        for (int d = 0; d < 4; d++) {
-            int i = p.getRank() + rankOffsets[d];
-            int j = p.getFile() + fileOffsets[d];
-            while (i >= 0 && i < Chess.BOARD_RANKS
-                    && j >= 0 && j < Chess.BOARD_FILES) {
-                Position current = Position.generateFromRankAndFile(i, j);
-
-                if (chess.isEmpty(current))
-                    result.add(current);
-                else {
-                    if (includeDefending ||
-                            chess.getPieceAt(current).getPieceColor()
-                            != chess.getPieceAt(p).getPieceColor())
-                        result.add(current);
-                    break;
-                }
-                i += rankOffsets[d];
-                j += fileOffsets[d];
-            }
-        }
-
-        return result.toArray(new Position[]{});
+        long result = Bitboards.bishopAttacks(square, board.getOccupied());
+        if (!includeDefending)
+            result &= ~board.getOccupancy(color);
+        return result;
     }
 }
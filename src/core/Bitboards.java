@@ -0,0 +1,281 @@
+package core;
+
+import java.util.SplittableRandom;
+
+/**
+ * Helpers for 64-bit square sets. Bit i of a set stands for the square with rank i / 8 and
+ * file i % 8, which is the order the squares have in an arrangement string: bit 0 is A8 and
+ * bit 63 is H1.
+ * <p>
+ * Attack sets come from lookup tables built once when the class is loaded. Knights, kings and
+ * pawns index their table by square. Rooks and bishops use magic bitboards: the blockers on
+ * the relevant rays are multiplied by a per-square magic number, and the top bits of the
+ * product index a table holding the attacks for that blocker configuration.
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = 0x8080808080808080L;
+    //A8 and H1 are light
+    public static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+
+    private static final int[][] KNIGHT_OFFSETS = {
+            {2, 1}, {2, -1}, {-2, 1}, {-2, -1},
+            {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
+    };
+    private static final int[][] KING_OFFSETS = {
+            {-1, -1}, {0, -1}, {1, -1},
+            {-1, 0}, {1, 0},
+            {-1, 1}, {0, 1}, {1, 1}
+    };
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+
+    //seed for the search that is only run if one of the magic numbers below stops working
+    private static final long MAGIC_SEED = 0x5DEECE66DL;
+
+    private static final int SQUARES = Chess.BOARD_RANKS * Chess.BOARD_FILES;
+
+    private static final long[] KNIGHT_ATTACKS = new long[SQUARES];
+    private static final long[] KING_ATTACKS = new long[SQUARES];
+    private static final long[][] PAWN_ATTACKS = new long[2][SQUARES];
+
+    private static final long[] ROOK_MASKS = new long[SQUARES];
+    //found once with buildMagics, stored so that loading the class takes no search
+    private static final long[] ROOK_MAGICS = {
+            0x7080024000108620L, 0x0040200010004000L, 0x0100081020004500L, 0x3880048110000801L,
+            0x4200200200080410L, 0x2400900400082002L, 0x45000B000F860004L, 0x220004038040A116L,
+            0x010280002084400AL, 0x0026402004401000L, 0x0045002002110048L, 0x0043002300100009L,
+            0x004280801C002800L, 0x4001800401801200L, 0x1005000411000200L, 0x408100120040A100L,
+            0x0160808000401020L, 0x0020004008205000L, 0x0000430010200300L, 0x4001818008005000L,
+            0x1D04008008008004L, 0x6002080110204004L, 0x2009040001081002L, 0x8094020020804401L,
+            0x00C00049800080A7L, 0x80015000C0002000L, 0xC000220200108040L, 0x00A8018480100108L,
+            0x0818008080080401L, 0x0A00040080020080L, 0x1A01080400104A31L, 0x000200A200011044L,
+            0x4080006001400040L, 0x240080400C802000L, 0x880500104100200AL, 0x0C02002012004008L,
+            0x0000800800800401L, 0x0402002004040010L, 0x0A06888104001002L, 0x01A0A400A2000041L,
+            0x00C0008000428022L, 0x5048C0E010054000L, 0x0010012000848011L, 0x0004100209010020L,
+            0x8000040008008080L, 0x2C08020004008080L, 0x0800020841040010L, 0x0006004408820019L,
+            0x1010400030800180L, 0x0280882000400880L, 0x02810098A0004300L, 0x02E4914840220200L,
+            0xA094800802040080L, 0x00220010A8045200L, 0x8000810210080400L, 0x2004800100016280L,
+            0x0000201040800D01L, 0x00090010E0854001L, 0x0000090040200011L, 0x014B0008A4300121L,
+            0x1806002004100802L, 0x0883000400020801L, 0x00101CA228051004L, 0x0438088100402402L
+    };
+    private static final int[] ROOK_SHIFTS = new int[SQUARES];
+    private static final int[] ROOK_OFFSETS = new int[SQUARES];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[SQUARES];
+    private static final long[] BISHOP_MAGICS = {
+            0x0229120802002200L, 0x00C4210809010800L, 0x080808210322020CL, 0x0628204040010201L,
+            0x0006021148000000L, 0x00008804C0040120L, 0x0040411048A0AC00L, 0x0000218218904002L,
+            0x4000091001020402L, 0xC004040410A42100L, 0x2224040800810608L, 0x0224044400800202L,
+            0x0080040420201000L, 0x2800010402410300L, 0x0000284814100882L, 0x0811010090900800L,
+            0x0840402424880602L, 0x00A00C4214142081L, 0x4990005E02801504L, 0x008C010802482841L,
+            0x1000821400A04038L, 0x01420054C9042000L, 0x2080405201700800L, 0x082200804A00C400L,
+            0x28040480C0100489L, 0x00041080841000C1L, 0x0224120174002400L, 0x0060124008004040L,
+            0x0011040082002101L, 0x080202802808900BL, 0x0004008101084110L, 0x4820408021008800L,
+            0x300608A000426200L, 0x30080808000401A0L, 0x050361880C300020L, 0x0082080800020A00L,
+            0x0040008208110100L, 0x0008882200644102L, 0x031004004800820EL, 0x0841441024110100L,
+            0x0089211820404004L, 0x0002013003110800L, 0x80D3A01050001800L, 0x0C00802014410801L,
+            0x800102020C000204L, 0x0004080048122100L, 0x00A0420200500200L, 0x0322080200360080L,
+            0x0816020282401008L, 0x0000840412428040L, 0x0108408404291024L, 0x0420080021981001L,
+            0x8000102020825004L, 0x110244A038024000L, 0x02502009040A8810L, 0x0032820404009000L,
+            0x0A88210100A0A004L, 0x1920060082211024L, 0x0010010100411000L, 0x4003084812104420L,
+            0x20800012D0020220L, 0x0600022004109086L, 0x2020080208082120L, 0x052444500C002080L
+    };
+    private static final int[] BISHOP_SHIFTS = new int[SQUARES];
+    private static final int[] BISHOP_OFFSETS = new int[SQUARES];
+    private static final long[] BISHOP_TABLE;
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            KNIGHT_ATTACKS[square] = patternAttacks(square, KNIGHT_OFFSETS);
+            KING_ATTACKS[square] = patternAttacks(square, KING_OFFSETS);
+
+            long b = bit(square);
+            //white pawns move towards rank index 0
+            PAWN_ATTACKS[Board.WHITE][square] = ((b & ~FILE_A) >>> 9) | ((b & ~FILE_H) >>> 7);
+            PAWN_ATTACKS[Board.BLACK][square] = ((b & ~FILE_H) << 9) | ((b & ~FILE_A) << 7);
+        }
+
+        SplittableRandom random = new SplittableRandom(MAGIC_SEED);
+        ROOK_TABLE = buildMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS,
+                ROOK_OFFSETS, random);
+        BISHOP_TABLE = buildMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS,
+                BISHOP_OFFSETS, random);
+    }
+
+    private Bitboards() {
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int square(int rank, int file) {
+        return rank * Chess.BOARD_FILES + file;
+    }
+
+    public static int square(Position p) {
+        return square(p.getRank(), p.getFile());
+    }
+
+    public static int rankOf(int square) {
+        return square / Chess.BOARD_FILES;
+    }
+
+    public static int fileOf(int square) {
+        return square % Chess.BOARD_FILES;
+    }
+
+    public static Position toPosition(int square) {
+        return Position.fromSquare(square);
+    }
+
+    /**
+     * Converts a square set into positions, in ascending square order.
+     * @param set The squares to convert.
+     * @return An array with one position per set bit.
+     */
+    public static Position[] toPositions(long set) {
+        Position[] result = new Position[Long.bitCount(set)];
+        for (int i = 0; set != 0; i++, set &= set - 1)
+            result[i] = toPosition(Long.numberOfTrailingZeros(set));
+        return result;
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * The squares a pawn attacks diagonally, whether or not they are occupied.
+     * @param color The color of the pawn, as a PieceColor ordinal.
+     * @param square The square of the pawn.
+     */
+    public static long pawnAttacks(int color, int square) {
+        return PAWN_ATTACKS[color][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[square]
+                + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[square]
+                + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    private static long patternAttacks(int square, int[][] offsets) {
+        long result = 0;
+        for (int[] offset : offsets) {
+            int rank = rankOf(square) + offset[0];
+            int file = fileOf(square) + offset[1];
+            if (rank >= 0 && rank < Chess.BOARD_RANKS && file >= 0 && file < Chess.BOARD_FILES)
+                result |= bit(square(rank, file));
+        }
+        return result;
+    }
+
+    /**
+     * The squares on the rays of a sliding piece whose occupancy can change its attacks: every
+     * ray square except the last one before the edge of the board.
+     */
+    private static long relevantBlockers(int square, int[][] directions) {
+        long result = 0;
+        for (int[] direction : directions) {
+            int rank = rankOf(square) + direction[0];
+            int file = fileOf(square) + direction[1];
+            while (rank + direction[0] >= 0 && rank + direction[0] < Chess.BOARD_RANKS
+                    && file + direction[1] >= 0 && file + direction[1] < Chess.BOARD_FILES) {
+                result |= bit(square(rank, file));
+                rank += direction[0];
+                file += direction[1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fills the attack table for one sliding piece. A stored magic number that produces a
+     * collision is replaced by a new one found through a random search.
+     * @return The attack table, with the section of each square starting at its offset.
+     */
+    private static long[] buildMagics(int[][] directions, long[] masks, long[] magics,
+                                      int[] shifts, int[] offsets, SplittableRandom random) {
+        int size = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            masks[square] = relevantBlockers(square, directions);
+            shifts[square] = 64 - Long.bitCount(masks[square]);
+            offsets[square] = size;
+            size += 1 << Long.bitCount(masks[square]);
+        }
+
+        long[] table = new long[size];
+        long[] blockers = new long[1 << 12];
+        long[] attacks = new long[1 << 12];
+        int[] epochs = new int[1 << 12];
+        int epoch = 0;
+
+        for (int square = 0; square < SQUARES; square++) {
+            //enumerate every subset of the mask with the carry-rippler trick
+            int count = 0;
+            long subset = 0;
+            do {
+                blockers[count] = subset;
+                attacks[count] = slidingAttacks(square, subset, directions);
+                count++;
+                subset = (subset - masks[square]) & masks[square];
+            } while (subset != 0);
+
+            boolean found = false;
+            long magic = magics[square];
+            while (!found) {
+                epoch++;
+                found = true;
+                for (int i = 0; i < count && found; i++) {
+                    int index = offsets[square] + (int) ((blockers[i] * magic) >>> shifts[square]);
+                    int local = index - offsets[square];
+                    if (epochs[local] != epoch) {
+                        epochs[local] = epoch;
+                        table[index] = attacks[i];
+                    } else if (table[index] != attacks[i])
+                        found = false;
+                }
+                if (found)
+                    magics[square] = magic;
+                else
+                    //magic numbers with few set bits work best
+                    magic = random.nextLong() & random.nextLong() & random.nextLong();
+            }
+        }
+
+        return table;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long result = 0;
+        for (int[] direction : directions) {
+            int rank = rankOf(square) + direction[0];
+            int file = fileOf(square) + direction[1];
+            while (rank >= 0 && rank < Chess.BOARD_RANKS && file >= 0 && file < Chess.BOARD_FILES) {
+                long current = bit(square(rank, file));
+                result |= current;
+                //the first occupied square ends the ray, but is still attacked
+                if ((occupied & current) != 0)
+                    break;
+                rank += direction[0];
+                file += direction[1];
+            }
+        }
+        return result;
+    }
+}
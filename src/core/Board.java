@@ -0,0 +1,245 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Primitive representation of the pieces on a board: one bitboard per piece type and color,
+ * the occupancy of each color, and a square-indexed mailbox of piece codes for constant-time
+ * lookups. Squares are numbered as described in {@link Bitboards}.
+ * <p>
+ * A piece code is color * PIECE_TYPES + type, where the color is a PieceColor ordinal.
+ * Only the core package may modify a board; everyone else gets a read-only view.
+ */
+public final class Board {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int PIECE_TYPES = 6;
+
+    public static final int NO_PIECE = -1;
+    public static final int NO_SQUARE = -1;
+
+    //the letters of the piece types, in the order of the type constants
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private final long[] pieces;
+    private final long[] occupancy;
+    private final byte[] squares;
+    private final int[] kingSquares;
+    //squares whose piece has already moved, only consulted for kings and rooks (L and S)
+    private long moved;
+    //Zobrist key; put and remove keep the piece part current, Chess adds the rest of the state
+    private long key;
+    //sums of the piece-square tables per color, and the game phase, kept current by put and remove
+    private final int[] middlegameScores;
+    private final int[] endgameScores;
+    private int phase;
+
+    Board() {
+        this.pieces = new long[2 * PIECE_TYPES];
+        this.occupancy = new long[2];
+        this.squares = new byte[Chess.BOARD_RANKS * Chess.BOARD_FILES];
+        Arrays.fill(this.squares, (byte) NO_PIECE);
+        this.kingSquares = new int[]{NO_SQUARE, NO_SQUARE};
+        this.middlegameScores = new int[2];
+        this.endgameScores = new int[2];
+    }
+
+    Board(Board other) {
+        this.pieces = other.pieces.clone();
+        this.occupancy = other.occupancy.clone();
+        this.squares = other.squares.clone();
+        this.kingSquares = other.kingSquares.clone();
+        this.moved = other.moved;
+        this.key = other.key;
+        this.middlegameScores = other.middlegameScores.clone();
+        this.endgameScores = other.endgameScores.clone();
+        this.phase = other.phase;
+    }
+
+    public static int code(int color, int type) {
+        return color * PIECE_TYPES + type;
+    }
+
+    public static int colorOf(int code) {
+        return code / PIECE_TYPES;
+    }
+
+    public static int typeOf(int code) {
+        return code % PIECE_TYPES;
+    }
+
+    /**
+     * Translates a character of an arrangement string into a piece code.
+     * @return The piece code, or NO_PIECE for an empty square.
+     */
+    public static int codeOf(char c) {
+        switch (c) {
+            case 'P': return code(WHITE, PAWN);
+            case 'N': return code(WHITE, KNIGHT);
+            case 'B': return code(WHITE, BISHOP);
+            case 'R': case 'S': return code(WHITE, ROOK);
+            case 'Q': return code(WHITE, QUEEN);
+            case 'K': case 'L': return code(WHITE, KING);
+            case 'p': return code(BLACK, PAWN);
+            case 'n': return code(BLACK, KNIGHT);
+            case 'b': return code(BLACK, BISHOP);
+            case 'r': case 's': return code(BLACK, ROOK);
+            case 'q': return code(BLACK, QUEEN);
+            case 'k': case 'l': return code(BLACK, KING);
+            default: return NO_PIECE;
+        }
+    }
+
+    /**
+     * @return The FEN letter of a piece code: upper case for white, lower case for black.
+     */
+    public static char symbolOf(int code) {
+        char letter = letterOf(typeOf(code));
+        return colorOf(code) == WHITE ? letter : Character.toLowerCase(letter);
+    }
+
+    /**
+     * @return The upper-case letter of a piece type, as in SAN and in promotions like "E8=Q".
+     */
+    public static char letterOf(int type) {
+        return PIECE_LETTERS.charAt(type);
+    }
+
+    /**
+     * @return The piece type of an upper-case letter, or NO_PIECE for any other character.
+     */
+    public static int typeOfLetter(char letter) {
+        return PIECE_LETTERS.indexOf(letter);
+    }
+
+    public long getPieces(int color, int type) {
+        return this.pieces[code(color, type)];
+    }
+
+    public long getPieces(int code) {
+        return this.pieces[code];
+    }
+
+    public long getOccupancy(int color) {
+        return this.occupancy[color];
+    }
+
+    public long getOccupied() {
+        return this.occupancy[WHITE] | this.occupancy[BLACK];
+    }
+
+    public int getPieceCode(int square) {
+        return this.squares[square];
+    }
+
+    /**
+     * @return The square of the king of the given color, or NO_SQUARE if there is none.
+     */
+    public int getKingSquare(int color) {
+        return this.kingSquares[color];
+    }
+
+    public boolean isEmpty(int square) {
+        return this.squares[square] == NO_PIECE;
+    }
+
+    public boolean hasMoved(int square) {
+        return (this.moved & Bitboards.bit(square)) != 0;
+    }
+
+    public long getKey() {
+        return this.key;
+    }
+
+    /**
+     * @return The sum of the middlegame piece-square values, material included, of the pieces
+     * of the given color.
+     * @see PieceSquareTables
+     */
+    public int getMiddlegameScore(int color) {
+        return this.middlegameScores[color];
+    }
+
+    /**
+     * @return The sum of the endgame piece-square values, material included, of the pieces of
+     * the given color.
+     */
+    public int getEndgameScore(int color) {
+        return this.endgameScores[color];
+    }
+
+    /**
+     * @return The amount of material left, weighted by PieceSquareTables.PHASE_WEIGHTS; it can
+     * exceed MAX_PHASE after promotions.
+     */
+    public int getPhase() {
+        return this.phase;
+    }
+
+    void setKey(long key) {
+        this.key = key;
+    }
+
+    void toggleKey(long feature) {
+        this.key ^= feature;
+    }
+
+    long getMovedSquares() {
+        return this.moved;
+    }
+
+    void setMovedSquares(long moved) {
+        this.moved = moved;
+    }
+
+    void setMoved(int square, boolean hasMoved) {
+        if (hasMoved)
+            this.moved |= Bitboards.bit(square);
+        else
+            this.moved &= ~Bitboards.bit(square);
+    }
+
+    /**
+     * Places a piece on an empty square.
+     */
+    void put(int square, int code) {
+        long b = Bitboards.bit(square);
+        this.pieces[code] |= b;
+        this.occupancy[colorOf(code)] |= b;
+        this.squares[square] = (byte) code;
+        this.key ^= Zobrist.piece(code, square);
+        this.middlegameScores[colorOf(code)] += PieceSquareTables.middlegame(code, square);
+        this.endgameScores[colorOf(code)] += PieceSquareTables.endgame(code, square);
+        this.phase += PieceSquareTables.PHASE_WEIGHTS[typeOf(code)];
+        if (typeOf(code) == KING)
+            this.kingSquares[colorOf(code)] = square;
+    }
+
+    /**
+     * Takes the piece off a square.
+     * @return The code of the removed piece, or NO_PIECE if the square was empty.
+     */
+    int remove(int square) {
+        int code = this.squares[square];
+        if (code != NO_PIECE) {
+            long b = Bitboards.bit(square);
+            this.pieces[code] &= ~b;
+            this.occupancy[colorOf(code)] &= ~b;
+            this.squares[square] = (byte) NO_PIECE;
+            this.key ^= Zobrist.piece(code, square);
+            this.middlegameScores[colorOf(code)] -= PieceSquareTables.middlegame(code, square);
+            this.endgameScores[colorOf(code)] -= PieceSquareTables.endgame(code, square);
+            this.phase -= PieceSquareTables.PHASE_WEIGHTS[typeOf(code)];
+            if (typeOf(code) == KING)
+                this.kingSquares[colorOf(code)] = NO_SQUARE;
+        }
+        return code;
+    }
+}
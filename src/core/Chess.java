@@ -1,6 +1,6 @@
 package core;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Chess implements Cloneable {
     public enum PieceColor {WHITE, BLACK}
@@ -12,10 +12,39 @@ public class Chess implements Cloneable {
     public static final int WHITE_PAWN_STARTING_RANK = 6;
     public static final int BLACK_PAWN_STARTING_RANK = 1;
 
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
 
-    private Piece[][] board;
+    //plies without captures or pawn moves after which the game is drawn
+    public static final int FIFTY_MOVE_PLIES = 100;
+
+    private static final int INITIAL_UNDO_CAPACITY = 64;
+    private static final GameStatus[] GAME_STATUSES = GameStatus.values();
+    //the home squares of kings and rooks; only moves touching them can change castling rights
+    private static final long CASTLING_SQUARES = 0x9100000000000091L;
+    //values() copies the array on every call
+    private static final PieceColor[] COLORS = PieceColor.values();
+
+
+    private Board board;
     private int numberOfMoves;
     private GameStatus gameStatus;
+    //the square skipped by a pawn that has just moved two squares, or Board.NO_SQUARE
+    private int enPassantSquare;
+    //plies since the last capture or pawn move, for the fifty-move rule
+    private int halfmoveClock;
+
+    //the moves made with makeMove, so they can be taken back without a board copy
+    private int[] undoMoves;
+    private long[] undoMovedSquares;
+    private long[] undoKeys;
+    private int[] undoEnPassantSquares;
+    private int[] undoHalfmoveClocks;
+    //ordinals of the game status, which performMove changes after its makeMove
+    private byte[] undoGameStatuses;
+    private int undoSize;
 
 
     public Chess() throws IllegalArrangementException {
@@ -52,86 +81,188 @@ public class Chess implements Cloneable {
     }
 
     public Chess(String arrangement, PieceColor turn) throws IllegalArrangementException {
-        verifyArrangement(arrangement);
-        this.numberOfMoves = turn.ordinal();
+        this(parseArrangement(arrangement), turn.ordinal(), Board.NO_SQUARE, 0);
+    }
+
+    /**
+     * Starts a game from a prepared board, as done by the parsers of the core package.
+     * @param numberOfMoves The number of plies played so far; its parity is the side to move.
+     */
+    Chess(Board board, int numberOfMoves, int enPassantSquare, int halfmoveClock) {
+        this.numberOfMoves = numberOfMoves;
         this.gameStatus = GameStatus.ONGOING;
-        this.board = new Piece[BOARD_RANKS][BOARD_FILES];
+        this.board = board;
+        this.undoMoves = new int[INITIAL_UNDO_CAPACITY];
+        this.undoMovedSquares = new long[INITIAL_UNDO_CAPACITY];
+        this.undoKeys = new long[INITIAL_UNDO_CAPACITY];
+        this.undoEnPassantSquares = new int[INITIAL_UNDO_CAPACITY];
+        this.undoHalfmoveClocks = new int[INITIAL_UNDO_CAPACITY];
+        this.undoGameStatuses = new byte[INITIAL_UNDO_CAPACITY];
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.board.setKey(this.computeKey());
+    }
 
+    private static Board parseArrangement(String arrangement) throws IllegalArrangementException {
+        verifyArrangement(arrangement);
+        Board board = new Board();
         for (int i = 0; i < arrangement.length(); i++) {
-            switch (arrangement.charAt(i)) {
-                case 'R':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Rook(PieceColor.WHITE);
-                    break;
-                case 'r':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Rook(PieceColor.BLACK);
-                    break;
-                case 'S':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Rook(PieceColor.WHITE, true);
-                    break;
-                case 's':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Rook(PieceColor.BLACK, true);
-                    break;
-                case 'N':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Knight(PieceColor.WHITE);
-                    break;
-                case 'n':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Knight(PieceColor.BLACK);
-                    break;
-                case 'B':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Bishop(PieceColor.WHITE);
-                    break;
-                case 'b':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Bishop(PieceColor.BLACK);
-                    break;
-                case 'K':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new King(PieceColor.WHITE);
-                    break;
-                case 'k':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new King(PieceColor.BLACK);
-                    break;
-                case 'L':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new King(PieceColor.WHITE, true);
-                    break;
-                case 'l':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new King(PieceColor.BLACK, true);
-                    break;
-                case 'Q':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Queen(PieceColor.WHITE);
-                    break;
-                case 'q':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Queen(PieceColor.BLACK);
-                    break;
-                case 'P':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Pawn(PieceColor.WHITE);
-                    break;
-                case 'p':
-                    this.board[i/BOARD_RANKS][i%BOARD_FILES] = new Pawn(PieceColor.BLACK);
-                    break;
+            char c = arrangement.charAt(i);
+            int code = Board.codeOf(c);
+            if (code != Board.NO_PIECE) {
+                board.put(i, code);
+                // S and L stand for a rook or a king that has already moved
+                if (c == 'S' || c == 's' || c == 'L' || c == 'l')
+                    board.setMoved(i, true);
             }
         }
+        return board;
+    }
+
+    /**
+     * Creates an independent copy of a game, including the moves that can be taken back.
+     * Only primitive arrays are copied, which makes it cheap to give every thread searching a
+     * game its own snapshot.
+     */
+    public Chess(Chess other) {
+        this.board = new Board(other.board);
+        this.numberOfMoves = other.numberOfMoves;
+        this.gameStatus = other.gameStatus;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.undoMoves = other.undoMoves.clone();
+        this.undoMovedSquares = other.undoMovedSquares.clone();
+        this.undoKeys = other.undoKeys.clone();
+        this.undoEnPassantSquares = other.undoEnPassantSquares.clone();
+        this.undoHalfmoveClocks = other.undoHalfmoveClocks.clone();
+        this.undoGameStatuses = other.undoGameStatuses.clone();
+        this.undoSize = other.undoSize;
     }
 
     public Piece[][] getBoard() {
         Piece[][] boardCopy = new Piece[BOARD_RANKS][BOARD_FILES];
         for (int i = 0; i < BOARD_RANKS; i++)
             for (int j = 0; j < BOARD_FILES; j++)
-                if (this.board[i][j] != null)
-                    boardCopy[i][j] = this.board[i][j].clone();
+                boardCopy[i][j] = this.createPiece(Bitboards.square(i, j));
         return boardCopy;
     }
 
+    /**
+     * Gives read-only access to the bitboards backing this game.
+     * @return The live board, which changes as moves are performed.
+     */
+    public Board getBitboards() {
+        return this.board;
+    }
+
     public Chess clone() {
-        try {
-            Chess copy = (Chess) super.clone();
-            copy.board = this.getBoard();
-            return copy;
-        } catch (CloneNotSupportedException e) {
-            return null;
-        }
+        return new Chess(this);
     }
 
     public PieceColor getTurn() {
-        return PieceColor.values()[this.numberOfMoves % 2];
+        return COLORS[this.numberOfMoves % 2];
+    }
+
+    /**
+     * The Zobrist key of the position, covering the placement of the pieces, the side to move,
+     * the castling rights and a capturable en passant square. It is updated with every move.
+     * @return A 64-bit hash that is equal for equal positions.
+     */
+    public long getZobristKey() {
+        return this.board.getKey();
+    }
+
+    /**
+     * @return The square skipped by a pawn that has just moved two squares forward, or
+     * Board.NO_SQUARE.
+     */
+    public int getEnPassantSquare() {
+        return this.enPassantSquare;
+    }
+
+    /**
+     * @return The number of plies since the last capture or pawn move.
+     */
+    public int getHalfmoveClock() {
+        return this.halfmoveClock;
+    }
+
+    /**
+     * @return The number of the current full move, starting at 1 and incremented after each
+     * move of black.
+     */
+    public int getFullmoveNumber() {
+        return this.numberOfMoves / 2 + 1;
+    }
+
+    /**
+     * Writes the pieces in the format accepted by the Chess(String, PieceColor) constructor,
+     * with S and L for rooks and kings that have already moved.
+     * @return A 64-character arrangement string.
+     */
+    public String getArrangement() {
+        char[] arrangement = new char[BOARD_RANKS * BOARD_FILES];
+        for (int square = 0; square < arrangement.length; square++) {
+            int code = this.board.getPieceCode(square);
+            char c = code == Board.NO_PIECE ? '-' : Board.symbolOf(code);
+            if (this.board.hasMoved(square) && (c == 'R' || c == 'K' || c == 'r' || c == 'k'))
+                c = c == 'R' ? 'S' : c == 'K' ? 'L' : c == 'r' ? 's' : 'l';
+            arrangement[square] = c;
+        }
+        return new String(arrangement);
+    }
+
+    /**
+     * Castling rights as far as the pieces are concerned: the king and the rook are on their
+     * home squares and have not moved yet.
+     * @return A combination of WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and
+     * BLACK_QUEENSIDE.
+     */
+    public int getCastlingRights() {
+        int rights = 0;
+        if (this.hasUnmovedPiece(60, Board.code(Board.WHITE, Board.KING))) {
+            if (this.hasUnmovedPiece(63, Board.code(Board.WHITE, Board.ROOK)))
+                rights |= WHITE_KINGSIDE;
+            if (this.hasUnmovedPiece(56, Board.code(Board.WHITE, Board.ROOK)))
+                rights |= WHITE_QUEENSIDE;
+        }
+        if (this.hasUnmovedPiece(4, Board.code(Board.BLACK, Board.KING))) {
+            if (this.hasUnmovedPiece(7, Board.code(Board.BLACK, Board.ROOK)))
+                rights |= BLACK_KINGSIDE;
+            if (this.hasUnmovedPiece(0, Board.code(Board.BLACK, Board.ROOK)))
+                rights |= BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
+
+    private boolean hasUnmovedPiece(int square, int code) {
+        return this.board.getPieceCode(square) == code && !this.board.hasMoved(square);
+    }
+
+    /**
+     * The en passant part of the key. The square only counts when a pawn of the side to move
+     * could capture onto it, so that positions that only differ in an unusable square match.
+     */
+    private long enPassantKey() {
+        if (this.enPassantSquare == Board.NO_SQUARE)
+            return 0;
+        int color = this.numberOfMoves % 2;
+        //the pawns that attack the square are found from the square, with the opposite color
+        if ((Bitboards.pawnAttacks(1 - color, this.enPassantSquare)
+                & this.board.getPieces(color, Board.PAWN)) == 0)
+            return 0;
+        return Zobrist.enPassant(Bitboards.fileOf(this.enPassantSquare));
+    }
+
+    private long computeKey() {
+        long key = 0;
+        for (long set = this.board.getOccupied(); set != 0; set &= set - 1) {
+            int square = Long.numberOfTrailingZeros(set);
+            key ^= Zobrist.piece(this.board.getPieceCode(square), square);
+        }
+        if (this.numberOfMoves % 2 == Board.BLACK)
+            key ^= Zobrist.blackToMove();
+        return key ^ Zobrist.castling(this.getCastlingRights()) ^ this.enPassantKey();
     }
 
     public boolean isGameOver() {
@@ -143,89 +274,307 @@ public class Chess implements Cloneable {
     }
 
     public boolean isEmpty(Position p) {
-        return this.board[p.getRank()][p.getFile()] == null;
+        return this.board.isEmpty(Bitboards.square(p));
     }
 
     public Piece getPieceAt(Position p) {
-        return this.board[p.getRank()][p.getFile()];
+        return this.createPiece(Bitboards.square(p));
+    }
+
+    private Piece createPiece(int square) {
+        int code = this.board.getPieceCode(square);
+        if (code == Board.NO_PIECE)
+            return null;
+
+        PieceColor color = COLORS[Board.colorOf(code)];
+        switch (Board.typeOf(code)) {
+            case Board.PAWN:
+                return new Pawn(color);
+            case Board.KNIGHT:
+                return new Knight(color);
+            case Board.BISHOP:
+                return new Bishop(color);
+            case Board.ROOK:
+                return new Rook(color, this.board.hasMoved(square));
+            case Board.QUEEN:
+                return new Queen(color);
+            default:
+                return new King(color, this.board.hasMoved(square));
+        }
     }
 
     public Position[] reachableFrom(Position origin) {
         if (origin == null || this.isEmpty(origin))
             return null;
 
-        return board[origin.getRank()][origin.getFile()].allDestinations(this,
-                origin, false);
+        return Bitboards.toPositions(this.destinations(Bitboards.square(origin), false));
+    }
+
+    /**
+     * The squares the piece on the given square can move to, without checking whether the
+     * move would expose its own king.
+     */
+    long destinations(int square, boolean includeDefending) {
+        int code = this.board.getPieceCode(square);
+        int color = Board.colorOf(code);
+
+        switch (Board.typeOf(code)) {
+            case Board.PAWN:
+                long pawnDestinations = Pawn.destinations(this.board, square, color, includeDefending);
+                if (this.enPassantSquare != Board.NO_SQUARE && color == this.numberOfMoves % 2)
+                    pawnDestinations |= Bitboards.pawnAttacks(color, square) & Bitboards.bit(this.enPassantSquare);
+                return pawnDestinations;
+            case Board.KNIGHT:
+                return Knight.destinations(this.board, square, color, includeDefending);
+            case Board.BISHOP:
+                return Bishop.reachableSquares(this.board, square, color, includeDefending);
+            case Board.ROOK:
+                return Rook.reachableSquares(this.board, square, color, includeDefending);
+            case Board.QUEEN:
+                return Queen.destinations(this.board, square, color, includeDefending);
+            default:
+                return King.destinations(this, square, color);
+        }
     }
 
     public boolean performMove(Move m) {
-        Position o = m.getOrigin();
-        Position d = m.getDestination();
+        int origin = Bitboards.square(m.getOrigin());
+        int destination = Bitboards.square(m.getDestination());
 
-        if (this.getPieceAt(o).getPieceColor() != this.getTurn())
+        if (this.board.isEmpty(origin)
+                || Board.colorOf(this.board.getPieceCode(origin)) != this.getTurn().ordinal())
             return false;
 
-        Position[] reachable = this.reachableFrom(o);
-
-        // A backup is created first. If the king is exposed to a threat after a potential move,
-        // the backup is restored. Hence, the following copy needs to be a deep copy.
-        Piece[][] boardCopy = this.getBoard();
-
-        for (int i = 0; i < reachable.length; i++)
-            if (d.getRank() == reachable[i].getRank()
-                    && d.getFile() == reachable[i].getFile()) {
-
-                if (this.board[o.getRank()][o.getFile()] instanceof King) {
-                    if (o.getRank() == 7
-                            && o.getFile() == 4
-                            && this.board[o.getRank()][o.getFile()].getPieceColor() == PieceColor.WHITE
-                            && ((King) this.board[o.getRank()][o.getFile()]).getHasMoved() == false
-                    ) {
-                        if (d.getRank() == 7 && d.getFile() == 2) {
-                            this.board[7][3] = new Rook(PieceColor.WHITE, true);
-                            this.board[7][0] = null;
-                        }
-                        if (d.getRank() == 7 && d.getFile() == 6) {
-                            this.board[7][5] = new Rook(PieceColor.WHITE, true);
-                            this.board[7][7] = null;
-                        }
-                    }
-
-                    if (o.getRank() == 0
-                            && o.getFile() == 4
-                            && this.board[o.getRank()][o.getFile()].getPieceColor() == PieceColor.BLACK
-                            && ((King) this.board[o.getRank()][o.getFile()]).getHasMoved() == false
-                    ) {
-                        if (d.getRank() == 0 && d.getFile() == 2) {
-                            this.board[0][3] = new Rook(PieceColor.BLACK, true);
-                            this.board[0][0] = null;
-                        }
-                        if (d.getRank() == 0 && d.getFile() == 6) {
-                            this.board[0][5] = new Rook(PieceColor.BLACK, true);
-                            this.board[0][7] = null;
-                        }
-                    }
-
-                    ((King)this.board[o.getRank()][o.getFile()]).setHasMoved(true);
-                }
-
-                if (this.board[o.getRank()][o.getFile()] instanceof Rook)
-                    ((Rook)this.board[o.getRank()][o.getFile()]).setHasMoved(true);
-
-                this.board[d.getRank()][d.getFile()] = this.board[o.getRank()][o.getFile()];
-                this.board[o.getRank()][o.getFile()] = null;
-
-                if (isKingUnderAttack(this.getTurn())) {
-                    this.board = boardCopy;
-                    return false;
-                }
-
-                this.numberOfMoves++;
-                updateGameStatus();
-                return true;
+        if ((this.destinations(origin, false) & Bitboards.bit(destination)) == 0)
+            return false;
+
+        // The move is made first. If the king is exposed to a threat afterwards, it is taken back.
+        PieceColor mover = this.getTurn();
+        int promotion = m.getPromotion();
+        if (promotion != Board.NO_PIECE && (promotion < Board.KNIGHT || promotion > Board.QUEEN))
+            return false;
+        this.makeMove(this.encodeMove(origin, destination,
+                promotion == Board.NO_PIECE ? Board.QUEEN : promotion));
+
+        if (isKingUnderAttack(mover)) {
+            this.unmakeMove();
+            return false;
+        }
+
+        updateGameStatus();
+        return true;
+    }
+
+    /**
+     * Moves the piece on the origin square to the destination square and passes the turn,
+     * without checking whether the move is legal and without updating the game status.
+     * Castling is recognized by the king moving two files and en passant by a pawn moving
+     * onto the en passant square; pawns reaching the last rank become queens.
+     * @param origin The square index of the piece to move, as described in {@link Bitboards}.
+     * @param destination The square index to move it to.
+     * @see #makeMove(int)
+     */
+    public void makeMove(int origin, int destination) {
+        this.makeMove(this.encodeMove(origin, destination, Board.QUEEN));
+    }
+
+    /**
+     * Performs a move encoded as described in {@link Moves} and passes the turn, without
+     * checking whether the move is legal and without updating the game status. The move can be
+     * taken back with unmakeMove; nothing is allocated unless the undo stack has to grow.
+     * @param move A move generated for this position, or encoded with matching flags.
+     */
+    public void makeMove(int move) {
+        if (this.undoSize == this.undoMoves.length) {
+            this.undoMoves = Arrays.copyOf(this.undoMoves, 2 * this.undoSize);
+            this.undoMovedSquares = Arrays.copyOf(this.undoMovedSquares, 2 * this.undoSize);
+            this.undoKeys = Arrays.copyOf(this.undoKeys, 2 * this.undoSize);
+            this.undoEnPassantSquares = Arrays.copyOf(this.undoEnPassantSquares, 2 * this.undoSize);
+            this.undoHalfmoveClocks = Arrays.copyOf(this.undoHalfmoveClocks, 2 * this.undoSize);
+            this.undoGameStatuses = Arrays.copyOf(this.undoGameStatuses, 2 * this.undoSize);
+        }
+        this.undoMovedSquares[this.undoSize] = this.board.getMovedSquares();
+        this.undoKeys[this.undoSize] = this.board.getKey();
+        this.undoEnPassantSquares[this.undoSize] = this.enPassantSquare;
+        this.undoHalfmoveClocks[this.undoSize] = this.halfmoveClock;
+        this.undoGameStatuses[this.undoSize] = (byte) this.gameStatus.ordinal();
+
+        int origin = Moves.getOrigin(move);
+        int destination = Moves.getDestination(move);
+        int flags = Moves.getFlags(move);
+
+        //the pieces update their part of the key; the rest of the state is swapped here
+        boolean touchesCastling = ((Bitboards.bit(origin) | Bitboards.bit(destination)) & CASTLING_SQUARES) != 0;
+        long stateKey = Zobrist.blackToMove() ^ this.enPassantKey();
+        if (touchesCastling)
+            stateKey ^= Zobrist.castling(this.getCastlingRights());
+
+        int code = this.board.remove(origin);
+        int captured = this.board.remove(destination);
+        this.board.put(destination, flags == Moves.PROMOTION
+                ? Board.code(Board.colorOf(code), Moves.getPromotion(move))
+                : code);
+
+        if (flags == Moves.EN_PASSANT)
+            captured = this.board.remove(enPassantCaptureSquare(origin, destination));
+        else if (flags == Moves.CASTLING) {
+            //the rook jumps over the king
+            int rookOrigin = destination > origin ? origin + 3 : origin - 4;
+            int rookDestination = (origin + destination) / 2;
+            this.board.put(rookDestination, this.board.remove(rookOrigin));
+            this.board.setMoved(rookOrigin, false);
+            this.board.setMoved(rookDestination, true);
+        }
+
+        this.board.setMoved(origin, false);
+        this.board.setMoved(destination, true);
+
+        this.undoMoves[this.undoSize++] = flags == Moves.PROMOTION
+                ? Moves.encodePromotion(origin, destination, captured, Moves.getPromotion(move))
+                : Moves.encode(origin, destination, flags, captured);
+        this.numberOfMoves++;
+        if (captured != Board.NO_PIECE || Board.typeOf(code) == Board.PAWN)
+            this.halfmoveClock = 0;
+        else
+            this.halfmoveClock++;
+
+        this.enPassantSquare = flags == Moves.DOUBLE_PAWN_PUSH
+                ? (origin + destination) / 2
+                : Board.NO_SQUARE;
+        stateKey ^= this.enPassantKey();
+        if (touchesCastling)
+            stateKey ^= Zobrist.castling(this.getCastlingRights());
+        this.board.toggleKey(stateKey);
+    }
+
+    /**
+     * Takes back the last move made with makeMove or performMove, restoring captured pieces,
+     * the moved flags of kings and rooks, and the game status.
+     */
+    public void unmakeMove() {
+        int move = this.undoMoves[--this.undoSize];
+        int origin = Moves.getOrigin(move);
+        int destination = Moves.getDestination(move);
+        int captured = Moves.getCaptured(move);
+        int flags = Moves.getFlags(move);
+
+        int code = this.board.remove(destination);
+        this.board.put(origin, flags == Moves.PROMOTION ? Board.code(Board.colorOf(code), Board.PAWN) : code);
+        if (flags == Moves.EN_PASSANT)
+            this.board.put(enPassantCaptureSquare(origin, destination), captured);
+        else if (captured != Board.NO_PIECE)
+            this.board.put(destination, captured);
+
+        if (flags == Moves.CASTLING) {
+            int rookOrigin = destination > origin ? origin + 3 : origin - 4;
+            int rookDestination = (origin + destination) / 2;
+            this.board.put(rookOrigin, this.board.remove(rookDestination));
+        }
+
+        this.board.setMovedSquares(this.undoMovedSquares[this.undoSize]);
+        this.board.setKey(this.undoKeys[this.undoSize]);
+        this.enPassantSquare = this.undoEnPassantSquares[this.undoSize];
+        this.halfmoveClock = this.undoHalfmoveClocks[this.undoSize];
+        this.gameStatus = GAME_STATUSES[this.undoGameStatuses[this.undoSize]];
+        this.numberOfMoves--;
+    }
+
+    /**
+     * @param promotion The piece type a pawn reaching the last rank turns into.
+     */
+    private int encodeMove(int origin, int destination, int promotion) {
+        int code = this.board.getPieceCode(origin);
+        int type = Board.typeOf(code);
+        int captured = this.board.getPieceCode(destination);
+        int flags = Moves.QUIET;
+        if (type == Board.KING && Math.abs(destination - origin) == 2)
+            flags = Moves.CASTLING;
+        else if (type == Board.PAWN) {
+            if (Math.abs(destination - origin) == 2 * BOARD_FILES)
+                flags = Moves.DOUBLE_PAWN_PUSH;
+            else if (destination == this.enPassantSquare && captured == Board.NO_PIECE)
+                return Moves.encode(origin, destination, Moves.EN_PASSANT,
+                        Board.code(1 - Board.colorOf(code), Board.PAWN));
+            else if (Bitboards.rankOf(destination) == 0 || Bitboards.rankOf(destination) == BOARD_RANKS - 1)
+                return Moves.encodePromotion(origin, destination, captured, promotion);
+        }
+        return Moves.encode(origin, destination, flags, captured);
+    }
+
+    //the pawn taken en passant stands beside the capturing pawn, on the file it moves to
+    private static int enPassantCaptureSquare(int origin, int destination) {
+        return Bitboards.square(Bitboards.rankOf(origin), Bitboards.fileOf(destination));
+    }
+
+    /**
+     * Fills the list with every move of the side to move that follows the movement rules of
+     * the pieces, including moves that would leave the own king in check. King moves onto
+     * threatened squares are already left out.
+     * @param moves The list to fill; its previous content is discarded.
+     * @return The number of generated moves.
+     */
+    public int generatePseudoLegalMoves(MoveList moves) {
+        return this.generateMoves(moves, -1L);
+    }
+
+    /**
+     * Fills the list with the pseudo-legal moves of the side to move that capture a piece, as
+     * needed by a quiescence search.
+     * @param moves The list to fill; its previous content is discarded.
+     * @return The number of generated captures.
+     */
+    public int generatePseudoLegalCaptures(MoveList moves) {
+        long targets = this.board.getOccupancy(1 - this.numberOfMoves % 2);
+        if (this.enPassantSquare != Board.NO_SQUARE)
+            targets |= Bitboards.bit(this.enPassantSquare);
+        return this.generateMoves(moves, targets);
+    }
+
+    private int generateMoves(MoveList moves, long targetMask) {
+        moves.clear();
+        int color = this.numberOfMoves % 2;
+        for (long pieces = this.board.getOccupancy(color); pieces != 0; pieces &= pieces - 1) {
+            int origin = Long.numberOfTrailingZeros(pieces);
+            long targets = this.destinations(origin, false) & targetMask;
+            for (; targets != 0; targets &= targets - 1) {
+                int move = this.encodeMove(origin, Long.numberOfTrailingZeros(targets), Board.QUEEN);
+                moves.add(move);
+                //the other promotions follow the queen
+                if (Moves.getFlags(move) == Moves.PROMOTION)
+                    for (int type = Board.ROOK; type >= Board.KNIGHT; type--)
+                        moves.add(Moves.encodePromotion(origin, Moves.getDestination(move),
+                                Moves.getCaptured(move), type));
             }
+        }
+        return moves.size();
+    }
 
-        return false;
+    /**
+     * Fills the list with every legal move of the side to move. Each candidate is tried with
+     * makeMove and unmakeMove, so no objects are created.
+     * @param moves The list to fill; its previous content is discarded.
+     * @return The number of legal moves.
+     */
+    public int generateLegalMoves(MoveList moves) {
+        this.generatePseudoLegalMoves(moves);
+        PieceColor mover = this.getTurn();
+        int king = this.board.getKingSquare(mover.ordinal());
+
+        int legal = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            //king destinations already exclude threatened squares
+            boolean isLegal = Moves.getOrigin(move) == king;
+            if (!isLegal) {
+                this.makeMove(move);
+                isLegal = !this.isKingUnderAttack(mover);
+                this.unmakeMove();
+            }
+            if (isLegal)
+                moves.set(legal++, move);
+        }
+        moves.truncate(legal);
+        return legal;
     }
 
     /**
@@ -234,25 +583,34 @@ public class Chess implements Cloneable {
      * @return True, if the king in question is under attack by the opponent.
      */
     public boolean isKingUnderAttack(PieceColor kingColor) {
-        Position kingPosition = null;
-        PieceColor opponentColor = invertColor(kingColor);
-        Position[] p = null;
-
-        //find the king
-        for (int i = 0; i < BOARD_RANKS; i++)
-            for (int j = 0; j < BOARD_FILES; j++)
-                if (board[i][j] != null
-                        && board[i][j].getPieceColor() == kingColor
-                        && board[i][j] instanceof King)
-                    kingPosition = Position.generateFromRankAndFile(i, j);
-
-        p = getAllDestinationsByColor(opponentColor);
+        int king = this.board.getKingSquare(kingColor.ordinal());
+        return king != Board.NO_SQUARE
+                && this.isSquareAttacked(king, 1 - kingColor.ordinal(), this.board.getOccupied());
+    }
 
-        for (int i = 0; i < p.length; i++)
-            if (p[i].equals(kingPosition))
-                return true;
+    /**
+     * Determines whether a piece of the given color attacks a square.
+     * @param square The square index, as described in {@link Bitboards}.
+     * @param attackerColor The color of the attacking side.
+     * @return True, if at least one piece of that color attacks the square.
+     */
+    public boolean isSquareAttacked(int square, PieceColor attackerColor) {
+        return this.isSquareAttacked(square, attackerColor.ordinal(), this.board.getOccupied());
+    }
 
-        return false;
+    boolean isSquareAttacked(int square, int color, long occupied) {
+        //Looks outward from the square: a piece attacks it exactly when the same kind of piece
+        //standing on the square would attack the attacker.
+        if ((Bitboards.pawnAttacks(1 - color, square) & this.board.getPieces(color, Board.PAWN)) != 0
+                || (Bitboards.knightAttacks(square) & this.board.getPieces(color, Board.KNIGHT)) != 0
+                || (Bitboards.kingAttacks(square) & this.board.getPieces(color, Board.KING)) != 0)
+            return true;
+
+        long queens = this.board.getPieces(color, Board.QUEEN);
+        return (Bitboards.bishopAttacks(square, occupied)
+                        & (this.board.getPieces(color, Board.BISHOP) | queens)) != 0
+                || (Bitboards.rookAttacks(square, occupied)
+                        & (this.board.getPieces(color, Board.ROOK) | queens)) != 0;
     }
 
     /**
@@ -263,73 +621,112 @@ public class Chess implements Cloneable {
      * @return An array with all reachable squares by all pieces of a color
      */
     public Position[] getAllDestinationsByColor(PieceColor color) {
-        ArrayList<Position> result = new ArrayList<>();
+        long result = 0;
+        for (long set = this.board.getOccupancy(color.ordinal()); set != 0; set &= set - 1)
+            result |= this.destinations(Long.numberOfTrailingZeros(set), false);
 
-        for (int i = 0; i < BOARD_RANKS; i++)
-            for (int j = 0; j < BOARD_FILES; j++)
-                if (board[i][j] != null && board[i][j].getPieceColor() == color) {
-                    Position[] current = board[i][j].allDestinations(this,
-                            Position.generateFromRankAndFile(i, j), false);
-
-                    for (Position currentPosition : current)
-                        if (!result.contains(currentPosition))
-                            result.add(currentPosition);
-                }
-
-        return result.toArray(new Position[]{});
-    }
-
-    private boolean stillHasMoves(PieceColor color) {
-        if (!isKingUnderAttack(color)) return true;
-
-        boolean wouldStillBeInDangerAfterMove;
-
-        for (int i = 0; i < BOARD_RANKS; i++) {
-            for (int j = 0; j < BOARD_FILES; j++) {
-                Piece currentPiece = this.board[i][j];
-                if (currentPiece != null && currentPiece.getPieceColor() == color) {
-                    Position[] possiblePositions = currentPiece.allDestinations(this,
-                            Position.generateFromRankAndFile(i, j), false);
-                    for (int k = 0; k < possiblePositions.length; k++) {
-                        Piece[][] boardBackup = this.getBoard();
-
-                        this.board[possiblePositions[k].getRank()][possiblePositions[k].getFile()]
-                                = this.board[i][j];
-                        this.board[i][j] = null;
-                        wouldStillBeInDangerAfterMove = isKingUnderAttack(color);
-
-                        this.board = boardBackup;
-                        if (!wouldStillBeInDangerAfterMove)
-                            return true;
-                    }
-                }
+        return Bitboards.toPositions(result);
+    }
+
+    /**
+     * Determines whether the side to move has at least one legal move. Pieces are visited one
+     * at a time and the search stops at the first legal move. Moves are only tried with
+     * makeMove and unmakeMove when they could expose the king, so nothing is allocated.
+     * @return False, if the side to move is checkmated or stalemated.
+     */
+    public boolean hasLegalMove() {
+        int color = this.numberOfMoves % 2;
+        PieceColor mover = COLORS[color];
+        int king = this.board.getKingSquare(color);
+
+        //king destinations already exclude threatened squares
+        if (king != Board.NO_SQUARE && this.destinations(king, false) != 0)
+            return true;
+
+        boolean inCheck = this.isKingUnderAttack(mover);
+        //only a piece on a line through the king can be pinned
+        long kingLines = king == Board.NO_SQUARE ? 0 : Bitboards.queenAttacks(king, 0);
+        long enPassant = this.enPassantSquare == Board.NO_SQUARE ? 0 : Bitboards.bit(this.enPassantSquare);
+
+        for (long pieces = this.board.getOccupancy(color); pieces != 0; pieces &= pieces - 1) {
+            int origin = Long.numberOfTrailingZeros(pieces);
+            if (origin == king)
+                continue;
+            long destinations = this.destinations(origin, false);
+            if (destinations == 0)
+                continue;
+            //en passant removes two pieces from the line of the king, so it is always tried
+            if (!inCheck && (Bitboards.bit(origin) & kingLines) == 0 && (destinations & enPassant) == 0)
+                return true;
+
+            for (; destinations != 0; destinations &= destinations - 1) {
+                this.makeMove(origin, Long.numberOfTrailingZeros(destinations));
+                boolean legal = !this.isKingUnderAttack(mover);
+                this.unmakeMove();
+                if (legal)
+                    return true;
             }
         }
-
         return false;
     }
 
-    private void updateGameStatus() {
+    /**
+     * Counts how often the current position has occurred, looking back only as far as the
+     * last capture or pawn move, since no earlier position can be repeated. The keys of the
+     * earlier positions are kept for unmakeMove anyway.
+     * @return The number of occurrences, including the current one.
+     */
+    public int getRepetitionCount() {
+        long key = this.board.getKey();
+        int count = 1;
+        int oldest = Math.max(0, this.undoSize - this.halfmoveClock);
+        //only positions with the same side to move can match
+        for (int i = this.undoSize - 2; i >= oldest; i -= 2)
+            if (this.undoKeys[i] == key)
+                count++;
+        return count;
+    }
 
-        if (this.getTurn() == PieceColor.WHITE) {
-            if (!stillHasMoves(PieceColor.WHITE)) {
-                if (isKingUnderAttack(PieceColor.WHITE)) {
-                    this.gameStatus = GameStatus.BLACK_WON;
-                    return;
-                }
-                this.gameStatus = GameStatus.DRAW;
-                return;
-            }
-        } else {
-            if (!stillHasMoves(PieceColor.BLACK)) {
-                if (isKingUnderAttack(PieceColor.BLACK)) {
-                    this.gameStatus = GameStatus.WHITE_WON;
-                    return;
-                }
+    /**
+     * Determines whether neither side has enough material left to mate: only kings, possibly
+     * with a single knight or bishop, or with bishops that all stand on squares of one color.
+     */
+    public boolean isInsufficientMaterial() {
+        if ((this.board.getPieces(Board.WHITE, Board.PAWN) | this.board.getPieces(Board.BLACK, Board.PAWN)
+                | this.board.getPieces(Board.WHITE, Board.ROOK) | this.board.getPieces(Board.BLACK, Board.ROOK)
+                | this.board.getPieces(Board.WHITE, Board.QUEEN) | this.board.getPieces(Board.BLACK, Board.QUEEN)) != 0)
+            return false;
+
+        long knights = this.board.getPieces(Board.WHITE, Board.KNIGHT) | this.board.getPieces(Board.BLACK, Board.KNIGHT);
+        long bishops = this.board.getPieces(Board.WHITE, Board.BISHOP) | this.board.getPieces(Board.BLACK, Board.BISHOP);
+        if (Long.bitCount(knights | bishops) <= 1)
+            return true;
+        return knights == 0
+                && ((bishops & Bitboards.LIGHT_SQUARES) == 0 || (bishops & ~Bitboards.LIGHT_SQUARES) == 0);
+    }
+
+    /**
+     * Determines whether the position is drawn by the fifty-move rule, threefold repetition
+     * or insufficient material. Checkmate and stalemate are not considered.
+     */
+    public boolean isDrawByRule() {
+        return this.halfmoveClock >= FIFTY_MOVE_PLIES
+                || this.isInsufficientMaterial()
+                || this.getRepetitionCount() >= 3;
+    }
+
+    private void updateGameStatus() {
+        PieceColor mover = this.getTurn();
+        if (!this.hasLegalMove()) {
+            if (this.isKingUnderAttack(mover))
+                this.gameStatus = mover == PieceColor.WHITE ? GameStatus.BLACK_WON : GameStatus.WHITE_WON;
+            else
                 this.gameStatus = GameStatus.DRAW;
-                return;
-            }
+            return;
         }
+
+        if (this.isDrawByRule())
+            this.gameStatus = GameStatus.DRAW;
     }
 
     public PieceColor invertColor(PieceColor color) {
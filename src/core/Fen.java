@@ -0,0 +1,189 @@
+package core;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation. The parser works on the characters
+ * of any CharSequence in place and fills the board directly, so no intermediate strings or
+ * pieces are created.
+ */
+public final class Fen {
+    public static final String INITIAL = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_SYMBOLS = "PNBRQKpnbrqk";
+
+    private Fen() {
+    }
+
+    public static Chess parse(CharSequence fen) throws IllegalArrangementException {
+        return parse(fen, 0, fen.length());
+    }
+
+    /**
+     * Parses the FEN record between two indices of a character sequence. The move clocks may
+     * be left out, in which case they default to 0 and 1; anything after them, such as EPD
+     * operations, is ignored.
+     * @throws IllegalArrangementException If the record is malformed or does not have exactly
+     * one king of each color.
+     */
+    public static Chess parse(CharSequence fen, int start, int end) throws IllegalArrangementException {
+        Board board = new Board();
+        int i = skipSpaces(fen, start, end);
+
+        int rank = 0, file = 0;
+        for (; i < end && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (file != Chess.BOARD_FILES || ++rank == Chess.BOARD_RANKS)
+                    throw malformed(fen, start, end, "wrong number of squares in a rank");
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > Chess.BOARD_FILES)
+                    throw malformed(fen, start, end, "wrong number of squares in a rank");
+            } else {
+                int code = PIECE_SYMBOLS.indexOf(c);
+                if (code < 0 || file == Chess.BOARD_FILES)
+                    throw malformed(fen, start, end, "unexpected '" + c + "' in the piece placement");
+                board.put(Bitboards.square(rank, file++), code);
+            }
+        }
+        if (rank != Chess.BOARD_RANKS - 1 || file != Chess.BOARD_FILES)
+            throw malformed(fen, start, end, "incomplete piece placement");
+        if (Long.bitCount(board.getPieces(Board.WHITE, Board.KING)) != 1
+                || Long.bitCount(board.getPieces(Board.BLACK, Board.KING)) != 1)
+            throw new InvalidNumberOfKingsException();
+
+        i = skipSpaces(fen, i, end);
+        if (i == end || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b'))
+            throw malformed(fen, start, end, "missing side to move");
+        int color = fen.charAt(i++) == 'w' ? Board.WHITE : Board.BLACK;
+
+        //kings and rooks count as moved unless a castling right says otherwise
+        long moved = board.getPieces(Board.WHITE, Board.KING) | board.getPieces(Board.WHITE, Board.ROOK)
+                | board.getPieces(Board.BLACK, Board.KING) | board.getPieces(Board.BLACK, Board.ROOK);
+        i = skipSpaces(fen, i, end);
+        if (i == end)
+            throw malformed(fen, start, end, "missing castling rights");
+        if (fen.charAt(i) == '-')
+            i++;
+        else
+            for (; i < end && fen.charAt(i) != ' '; i++) {
+                int king, rook, side;
+                switch (fen.charAt(i)) {
+                    case 'K': king = 60; rook = 63; side = Board.WHITE; break;
+                    case 'Q': king = 60; rook = 56; side = Board.WHITE; break;
+                    case 'k': king = 4; rook = 7; side = Board.BLACK; break;
+                    case 'q': king = 4; rook = 0; side = Board.BLACK; break;
+                    default: throw malformed(fen, start, end, "unexpected '" + fen.charAt(i) + "' in the castling rights");
+                }
+                if (board.getPieceCode(king) != Board.code(side, Board.KING)
+                        || board.getPieceCode(rook) != Board.code(side, Board.ROOK))
+                    throw malformed(fen, start, end, "castling right without its king and rook");
+                moved &= ~(Bitboards.bit(king) | Bitboards.bit(rook));
+            }
+        board.setMovedSquares(moved);
+
+        int enPassantSquare = Board.NO_SQUARE;
+        i = skipSpaces(fen, i, end);
+        if (i == end)
+            throw malformed(fen, start, end, "missing en passant square");
+        if (fen.charAt(i) == '-')
+            i++;
+        else {
+            //the square behind a pawn of the side that has just moved
+            char expectedRank = color == Board.WHITE ? '6' : '3';
+            if (i + 1 >= end || fen.charAt(i) < 'a' || fen.charAt(i) > 'h' || fen.charAt(i + 1) != expectedRank)
+                throw malformed(fen, start, end, "invalid en passant square");
+            enPassantSquare = Bitboards.square('8' - expectedRank, fen.charAt(i) - 'a');
+            i += 2;
+        }
+
+        int halfmoveClock = 0, fullmoveNumber = 1;
+        i = skipSpaces(fen, i, end);
+        if (i < end && isDigit(fen.charAt(i))) {
+            for (; i < end && isDigit(fen.charAt(i)); i++)
+                halfmoveClock = halfmoveClock * 10 + fen.charAt(i) - '0';
+            i = skipSpaces(fen, i, end);
+            if (i == end || !isDigit(fen.charAt(i)))
+                throw malformed(fen, start, end, "missing fullmove number");
+            fullmoveNumber = 0;
+            for (; i < end && isDigit(fen.charAt(i)); i++)
+                fullmoveNumber = fullmoveNumber * 10 + fen.charAt(i) - '0';
+            fullmoveNumber = Math.max(1, fullmoveNumber);
+        }
+
+        return new Chess(board, 2 * (fullmoveNumber - 1) + color, enPassantSquare, halfmoveClock);
+    }
+
+    /**
+     * Writes the position of a game as a FEN record.
+     */
+    public static String toFen(Chess chess) {
+        StringBuilder sb = new StringBuilder(90);
+        appendTo(chess, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the FEN record of the position of a game, so that many positions can be
+     * written into one buffer.
+     */
+    public static void appendTo(Chess chess, StringBuilder sb) {
+        Board board = chess.getBitboards();
+        for (int rank = 0; rank < Chess.BOARD_RANKS; rank++) {
+            if (rank > 0)
+                sb.append('/');
+            int empty = 0;
+            for (int file = 0; file < Chess.BOARD_FILES; file++) {
+                int code = board.getPieceCode(Bitboards.square(rank, file));
+                if (code == Board.NO_PIECE)
+                    empty++;
+                else {
+                    if (empty > 0)
+                        sb.append((char) ('0' + empty));
+                    empty = 0;
+                    sb.append(Board.symbolOf(code));
+                }
+            }
+            if (empty > 0)
+                sb.append((char) ('0' + empty));
+        }
+
+        sb.append(chess.getTurn() == Chess.PieceColor.WHITE ? " w " : " b ");
+
+        int rights = chess.getCastlingRights();
+        if (rights == 0)
+            sb.append('-');
+        if ((rights & Chess.WHITE_KINGSIDE) != 0)
+            sb.append('K');
+        if ((rights & Chess.WHITE_QUEENSIDE) != 0)
+            sb.append('Q');
+        if ((rights & Chess.BLACK_KINGSIDE) != 0)
+            sb.append('k');
+        if ((rights & Chess.BLACK_QUEENSIDE) != 0)
+            sb.append('q');
+
+        sb.append(' ');
+        int enPassantSquare = chess.getEnPassantSquare();
+        if (enPassantSquare == Board.NO_SQUARE)
+            sb.append('-');
+        else
+            sb.append((char) ('a' + Bitboards.fileOf(enPassantSquare)))
+                    .append((char) ('8' - Bitboards.rankOf(enPassantSquare)));
+
+        sb.append(' ').append(chess.getHalfmoveClock()).append(' ').append(chess.getFullmoveNumber());
+    }
+
+    private static int skipSpaces(CharSequence fen, int i, int end) {
+        while (i < end && fen.charAt(i) == ' ')
+            i++;
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArrangementException malformed(CharSequence fen, int start, int end, String reason) {
+        return new IllegalArrangementException("Malformed FEN (" + reason + "): " + fen.subSequence(start, end));
+    }
+}
@@ -1,7 +1,5 @@
 package core;
 
-import java.util.ArrayList;
-
 public class Knight extends Piece {
     public Knight() {
         super();
@@ -19,28 +17,14 @@ public class Knight extends Piece {
     }
 
     public Position[] allDestinations(Chess chess, Position p, boolean includeDefending) {
-        int[][] pattern = {
-                {p.getRank() + 2, p.getFile() + 1},
-                {p.getRank() + 2, p.getFile() - 1},
-                {p.getRank() - 2, p.getFile() + 1},
-                {p.getRank() - 2, p.getFile() - 1},
-
-                {p.getRank() + 1, p.getFile() + 2},
-                {p.getRank() + 1, p.getFile() - 2},
-                {p.getRank() - 1, p.getFile() + 2},
-                {p.getRank() - 1, p.getFile() - 2}
-        };
-
-        ArrayList<Position> result = new ArrayList<>();
-
-        for (int i = 0; i < pattern.length; i++) {
-            Position potential = Position.generateFromRankAndFile(pattern[i][0], pattern[i][1]);
-            if (potential != null && (chess.isEmpty(potential) || includeDefending
-                    || chess.getPieceAt(potential).getPieceColor()
-                        != chess.getPieceAt(p).getPieceColor()))
-                result.add(potential);
-        }
+        return Bitboards.toPositions(Knight.destinations(chess.getBitboards(), Bitboards.square(p),
+                this.getPieceColor().ordinal(), includeDefending));
+    }
 
-        return result.toArray(new Position[]{});
+    static long destinations(Board board, int square, int color, boolean includeDefending) {
+        long result = Bitboards.knightAttacks(square);
+        if (!includeDefending)
+            result &= ~board.getOccupancy(color);
+        return result;
     }
 }
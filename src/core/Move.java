@@ -1,29 +1,62 @@
 package core;
 
 public class Move {
-    //immutable, contains mutable references
-    private Position origin;
-    private Position destination;
+    //immutable, and so are the positions
+    private final Position origin;
+    private final Position destination;
+    //the Board piece type a pawn turns into, or Board.NO_PIECE
+    private final int promotion;
 
     public Move(Position origin, Position destination) {
-        this.origin = new Position(origin);
-        this.destination = new Position(destination);
+        this(origin, destination, Board.NO_PIECE);
+    }
+
+    /**
+     * @param promotion The Board piece type a pawn reaching the last rank turns into, or
+     *                  Board.NO_PIECE for a queen.
+     */
+    public Move(Position origin, Position destination, int promotion) {
+        this.origin = origin;
+        this.destination = destination;
+        this.promotion = promotion;
     }
 
     public Move(Move other) {
-        this.origin = new Position(other.origin);
-        this.destination = new Position(other.destination);
+        this.origin = other.origin;
+        this.destination = other.destination;
+        this.promotion = other.promotion;
     }
 
     public Position getOrigin() {
-        return new Position(this.origin);
+        return this.origin;
     }
 
     public Position getDestination() {
-        return new Position(this.destination);
+        return this.destination;
+    }
+
+    public int getPromotion() {
+        return this.promotion;
+    }
+
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (other == null || other.getClass() != Move.class)
+            return false;
+        Move otherMove = (Move) other;
+        return this.origin.equals(otherMove.origin) && this.destination.equals(otherMove.destination)
+                && this.promotion == otherMove.promotion;
+    }
+
+    public int hashCode() {
+        return (this.origin.hashCode() * 64 + this.destination.hashCode()) * 8 + this.promotion + 1;
     }
 
     public String toString() {
-        return this.origin.toString() + " " + this.destination.toString();
+        String squares = this.origin.toString() + " " + this.destination.toString();
+        if (this.promotion != Board.NO_PIECE)
+            squares += "=" + Board.letterOf(this.promotion);
+        return squares;
     }
 }
@@ -0,0 +1,66 @@
+package core;
+
+/**
+ * A preallocated buffer of moves encoded as described in {@link Moves}. A list is meant to be
+ * kept and refilled, for example one per search depth, so that generating moves allocates
+ * nothing.
+ */
+public final class MoveList {
+    //no reachable position has more than 218 legal moves
+    public static final int CAPACITY = 256;
+
+    private final int[] moves;
+    private int size;
+
+    public MoveList() {
+        this.moves = new int[CAPACITY];
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int get(int i) {
+        return this.moves[i];
+    }
+
+    public void set(int i, int move) {
+        this.moves[i] = move;
+    }
+
+    public void swap(int i, int j) {
+        int temp = this.moves[i];
+        this.moves[i] = this.moves[j];
+        this.moves[j] = temp;
+    }
+
+    public void add(int move) {
+        this.moves[this.size++] = move;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Keeps the first moves and drops the rest.
+     */
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(Moves.toString(this.moves[i]));
+        }
+        return sb.toString();
+    }
+}
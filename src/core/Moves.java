@@ -0,0 +1,97 @@
+package core;
+
+/**
+ * Helpers for moves packed into a single int, so that move lists and undo records need no
+ * objects. Bits 0-5 hold the origin square, bits 6-11 the destination square (both numbered as
+ * described in {@link Bitboards}), bits 12-15 the flags, bits 16-19 the code of the captured
+ * piece plus one, so that zero means nothing is captured, and bits 20-22 the type a pawn is
+ * promoted to.
+ */
+public final class Moves {
+    //encodes a move from A8 to A8, which no piece can make
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int CASTLING = 1;
+    public static final int DOUBLE_PAWN_PUSH = 2;
+    //the captured pawn is not on the destination square
+    public static final int EN_PASSANT = 3;
+    public static final int PROMOTION = 4;
+
+    private Moves() {
+    }
+
+    public static int encode(int origin, int destination, int flags, int captured) {
+        return origin | destination << 6 | flags << 12 | (captured + 1) << 16;
+    }
+
+    /**
+     * @param promotion The Board piece type the pawn turns into.
+     */
+    public static int encodePromotion(int origin, int destination, int captured, int promotion) {
+        return encode(origin, destination, PROMOTION, captured) | promotion << 20;
+    }
+
+    public static int getOrigin(int move) {
+        return move & 63;
+    }
+
+    public static int getDestination(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int getFlags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    /**
+     * @return The code of the captured piece, or Board.NO_PIECE.
+     */
+    public static int getCaptured(int move) {
+        return ((move >>> 16) & 15) - 1;
+    }
+
+    public static boolean isCapture(int move) {
+        return getCaptured(move) != Board.NO_PIECE;
+    }
+
+    /**
+     * @return The Board piece type the pawn is promoted to, or Board.NO_PIECE.
+     */
+    public static int getPromotion(int move) {
+        return getFlags(move) == PROMOTION ? (move >>> 20) & 7 : Board.NO_PIECE;
+    }
+
+    public static Move toMove(int move) {
+        return new Move(Bitboards.toPosition(getOrigin(move)), Bitboards.toPosition(getDestination(move)),
+                getPromotion(move));
+    }
+
+    /**
+     * @return The squares of the move, such as "E2 E4", followed by the promotion as in
+     * "E7 E8=Q".
+     */
+    public static String toString(int move) {
+        String squares = Bitboards.toPosition(getOrigin(move)) + " " + Bitboards.toPosition(getDestination(move));
+        if (getFlags(move) == PROMOTION)
+            squares += "=" + Board.letterOf(getPromotion(move));
+        return squares;
+    }
+
+    /**
+     * Reads the piece a pawn is promoted to from its letter, in either case.
+     * @return The Board piece type, or Board.NO_PIECE unless the letter is N, B, R or Q.
+     */
+    public static int promotionOf(char letter) {
+        int type = Board.typeOfLetter(Character.toUpperCase(letter));
+        return type > Board.PAWN && type < Board.KING ? type : Board.NO_PIECE;
+    }
+
+    /**
+     * @param word A word of user input, such as "q".
+     * @return The Board piece type, or Board.NO_PIECE unless the word is one promotion letter.
+     */
+    public static int promotionOf(String word) {
+        return word.length() == 1 ? promotionOf(word.charAt(0)) : Board.NO_PIECE;
+    }
+}
@@ -1,7 +1,5 @@
 package core;
 
-import java.util.ArrayList;
-
 public class Pawn extends Piece {
     public Pawn() {
         this(Chess.PieceColor.WHITE);
@@ -19,41 +17,31 @@ public class Pawn extends Piece {
     }
 
     public Position[] allDestinations(Chess chess, Position p, boolean includeDefending) {
-        ArrayList<Position> result = new ArrayList<>();
-        Chess.PieceColor myColor = chess.getPieceAt(p).getPieceColor();
+        return Bitboards.toPositions(Pawn.destinations(chess.getBitboards(), Bitboards.square(p),
+                this.getPieceColor().ordinal(), includeDefending));
+    }
 
-        Position front = null, jump = null, left = null, right = null;
+    static long destinations(Board board, int square, int color, boolean includeDefending) {
+        long empty = ~board.getOccupied();
+        long front, jump = 0;
 
-        if (myColor == Chess.PieceColor.WHITE) {
+        if (color == Board.WHITE) {
             //upward movements.
-            front = Position.generateFromRankAndFile(p.getRank() - 1, p.getFile());
-            if (p.getRank() == Chess.WHITE_PAWN_STARTING_RANK)
-                jump = Position.generateFromRankAndFile(Chess.WHITE_PAWN_STARTING_RANK - 2, p.getFile());
-            left = Position.generateFromRankAndFile(p.getRank() - 1, p.getFile() - 1);
-            right = Position.generateFromRankAndFile(p.getRank() - 1, p.getFile() + 1);
+            front = (Bitboards.bit(square) >>> Chess.BOARD_FILES) & empty;
+            if (Bitboards.rankOf(square) == Chess.WHITE_PAWN_STARTING_RANK)
+                jump = (front >>> Chess.BOARD_FILES) & empty;
         } else {
             //downward movements.
-            front = Position.generateFromRankAndFile(p.getRank() + 1, p.getFile());
-            if (p.getRank() == Chess.BLACK_PAWN_STARTING_RANK)
-                jump = Position.generateFromRankAndFile(Chess.BLACK_PAWN_STARTING_RANK + 2, p.getFile());
-            left = Position.generateFromRankAndFile(p.getRank() + 1, p.getFile() - 1);
-            right = Position.generateFromRankAndFile(p.getRank() + 1, p.getFile() + 1);
+            front = (Bitboards.bit(square) << Chess.BOARD_FILES) & empty;
+            if (Bitboards.rankOf(square) == Chess.BLACK_PAWN_STARTING_RANK)
+                jump = (front << Chess.BOARD_FILES) & empty;
         }
 
-        if (front != null && chess.isEmpty(front))
-            result.add(front);
-
-        if (left != null && chess.getPieceAt(left) != null
-                && (includeDefending || chess.getPieceAt(left).getPieceColor() != this.getPieceColor()))
-            result.add(left);
-
-        if (right != null && chess.getPieceAt(right) != null
-                && (includeDefending || chess.getPieceAt(right).getPieceColor() != this.getPieceColor()))
-            result.add(right);
-
-        if (front != null && chess.isEmpty(front) && jump != null && chess.isEmpty(jump))
-            result.add(jump);
+        //diagonal squares are only reachable when there is something to capture
+        long captures = Bitboards.pawnAttacks(color, square) & board.getOccupied();
+        if (!includeDefending)
+            captures &= ~board.getOccupancy(color);
 
-        return result.toArray(new Position[]{});
+        return front | jump | captures;
     }
 }
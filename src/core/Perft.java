@@ -0,0 +1,70 @@
+package core;
+
+/**
+ * Counts the leaves of the legal move tree below a position up to a fixed depth (perft). The
+ * counts of well-known positions are published, which makes perft the standard correctness
+ * check for move generation, and the counting speed a throughput measure for it.
+ * <p>
+ * The game is modified while counting but is restored before a count returns.
+ */
+public final class Perft {
+    private final Chess chess;
+    private MoveList[] moveLists;
+
+    public Perft(Chess chess) {
+        this.chess = chess;
+        this.moveLists = new MoveList[0];
+    }
+
+    /**
+     * @return The number of move sequences of exactly the given length.
+     */
+    public long count(int depth) {
+        if (depth <= 0)
+            return 1;
+        this.ensureDepth(depth);
+        return this.countBelow(depth);
+    }
+
+    /**
+     * Counts the leaves below every legal move of the root separately.
+     * @param depth The depth, including the root move.
+     * @param rootMoves Filled with the legal moves of the root.
+     * @return The count for each root move, in the order of rootMoves.
+     */
+    public long[] divide(int depth, MoveList rootMoves) {
+        int size = this.chess.generateLegalMoves(rootMoves);
+        long[] counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            this.chess.makeMove(rootMoves.get(i));
+            counts[i] = this.count(depth - 1);
+            this.chess.unmakeMove();
+        }
+        return counts;
+    }
+
+    private long countBelow(int depth) {
+        MoveList moves = this.moveLists[depth - 1];
+        int size = this.chess.generateLegalMoves(moves);
+        //the last level only needs the number of moves
+        if (depth == 1)
+            return size;
+
+        long result = 0;
+        for (int i = 0; i < size; i++) {
+            this.chess.makeMove(moves.get(i));
+            result += this.countBelow(depth - 1);
+            this.chess.unmakeMove();
+        }
+        return result;
+    }
+
+    private void ensureDepth(int depth) {
+        if (this.moveLists.length >= depth)
+            return;
+        MoveList[] lists = new MoveList[depth];
+        for (int i = 0; i < depth; i++)
+            lists[i] = i < this.moveLists.length ? this.moveLists[i] : new MoveList();
+        this.moveLists = lists;
+    }
+}
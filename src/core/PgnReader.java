@@ -0,0 +1,288 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams the games of a PGN file. Games are replayed move by move on a Chess and reported to
+ * a visitor as they are read, so only the current game's tag pairs and position are held in
+ * memory, whatever the size of the file. Comments, variations and numeric annotations are
+ * skipped.
+ */
+public class PgnReader implements Closeable {
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives the games of a PGN file.
+     */
+    public interface GameVisitor {
+        /**
+         * Called before the first move of a game.
+         * @param tags The tag pairs of the game; the map is reused for the next game.
+         * @param chess The starting position, from the FEN tag if there is one.
+         */
+        default void startGame(Map<String, String> tags, Chess chess) {
+        }
+
+        /**
+         * Called after a move has been made on the game.
+         * @param move The move, encoded as described in {@link Moves}.
+         */
+        void move(Chess chess, int move);
+
+        /**
+         * Called at the end of a game.
+         * @param result The result token, such as "1-0" or "*", or null if the file ended first.
+         */
+        default void endGame(String result) {
+        }
+
+        /**
+         * Called when a game cannot be replayed any further; its remaining moves are skipped.
+         */
+        default void error(long line, String message) {
+        }
+    }
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long line = 1;
+    //the last two characters read, to recognize escape lines starting with '%'
+    private int previous = '\n';
+    private int current = '\n';
+
+    private final StringBuilder token = new StringBuilder();
+    private final Map<String, String> tags = new HashMap<>();
+    private final MoveList scratch = new MoveList();
+    private long games;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next game and reports it to the visitor.
+     * @return False, if there are no more games.
+     */
+    public boolean readGame(GameVisitor visitor) throws IOException {
+        this.tags.clear();
+        Chess chess = null;
+        boolean started = false, broken = false;
+
+        while (true) {
+            int c = skipWhitespace();
+            if (c < 0) {
+                if (!started && this.tags.isEmpty())
+                    return false;
+                if (!started && (chess = startPosition(visitor)) != null)
+                    visitor.startGame(this.tags, chess);
+                visitor.endGame(null);
+                this.games++;
+                return true;
+            }
+
+            if (c == '[' && !started) {
+                readTag();
+                continue;
+            }
+            if (c == '{') {
+                skipUntil('}');
+                continue;
+            }
+            if (c == ';' || (c == '%' && isLineStart())) {
+                skipUntil('\n');
+                continue;
+            }
+            if (c == '(') {
+                skipVariation();
+                continue;
+            }
+            if (c == '[') {
+                //a new game starts although this one has no result
+                unread();
+                visitor.endGame(null);
+                this.games++;
+                return true;
+            }
+
+            readToken(c);
+            if (!started) {
+                started = true;
+                chess = startPosition(visitor);
+                broken = chess == null;
+                if (chess != null)
+                    visitor.startGame(this.tags, chess);
+            }
+            if (isResult()) {
+                visitor.endGame(this.token.toString());
+                this.games++;
+                return true;
+            }
+            if (broken || this.token.charAt(0) == '$' || contentEquals("e.p."))
+                continue;
+
+            //move numbers may be glued to the move, as in "12.Nf3" or "12...Nf3"; digits without
+            //a dot belong to the move itself, as in "0-0"
+            int start = 0;
+            while (start < this.token.length() && Character.isDigit(this.token.charAt(start)))
+                start++;
+            if (start > 0 && (start == this.token.length() || this.token.charAt(start) == '.')) {
+                while (start < this.token.length() && this.token.charAt(start) == '.')
+                    start++;
+                this.token.delete(0, start);
+                if (this.token.length() == 0)
+                    continue;
+            }
+
+            int move = San.decode(chess, this.token, this.scratch);
+            if (move == Moves.NONE) {
+                visitor.error(this.line, "cannot play " + this.token + " in game " + (this.games + 1));
+                broken = true;
+                continue;
+            }
+            chess.makeMove(move);
+            visitor.move(chess, move);
+        }
+    }
+
+    /**
+     * Reads every remaining game.
+     * @return The number of games read.
+     */
+    public long readAll(GameVisitor visitor) throws IOException {
+        long count = 0;
+        while (readGame(visitor))
+            count++;
+        return count;
+    }
+
+    public long getGames() {
+        return this.games;
+    }
+
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    private Chess startPosition(GameVisitor visitor) {
+        String fen = this.tags.get("FEN");
+        try {
+            return fen != null ? Fen.parse(fen) : new Chess();
+        } catch (IllegalArrangementException e) {
+            visitor.error(this.line, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isResult() {
+        return contentEquals("1-0") || contentEquals("0-1") || contentEquals("1/2-1/2") || contentEquals("*");
+    }
+
+    private boolean contentEquals(String s) {
+        if (this.token.length() != s.length())
+            return false;
+        for (int i = 0; i < s.length(); i++)
+            if (this.token.charAt(i) != s.charAt(i))
+                return false;
+        return true;
+    }
+
+    private void readTag() throws IOException {
+        this.token.setLength(0);
+        int c = skipWhitespace();
+        while (c >= 0 && c != '"' && c != ']' && !Character.isWhitespace(c)) {
+            this.token.append((char) c);
+            c = read();
+        }
+        String name = this.token.toString();
+
+        while (c >= 0 && c != '"' && c != ']')
+            c = read();
+        this.token.setLength(0);
+        if (c == '"') {
+            for (c = read(); c >= 0 && c != '"'; c = read()) {
+                if (c == '\\')
+                    c = read();
+                if (c >= 0)
+                    this.token.append((char) c);
+            }
+            skipUntil(']');
+        }
+        this.tags.put(name, this.token.toString());
+    }
+
+    private void readToken(int c) throws IOException {
+        this.token.setLength(0);
+        while (c >= 0 && !Character.isWhitespace(c) && "{}();[".indexOf(c) < 0) {
+            this.token.append((char) c);
+            c = read();
+        }
+        if (c >= 0)
+            unread();
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c < 0)
+                return;
+            if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (c == '{')
+                skipUntil('}');
+            else if (c == ';')
+                skipUntil('\n');
+        }
+    }
+
+    private void skipUntil(char end) throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && c != end);
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private boolean isLineStart() {
+        return this.previous == '\n';
+    }
+
+    private int read() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = this.reader.read(this.buffer, 0, this.buffer.length);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return -1;
+            }
+        }
+        char c = this.buffer[this.position++];
+        if (c == '\n')
+            this.line++;
+        this.previous = this.current;
+        this.current = c;
+        return c;
+    }
+
+    //steps back over the character just read, which is still in the buffer
+    private void unread() {
+        if (this.buffer[--this.position] == '\n')
+            this.line--;
+        this.current = this.previous;
+    }
+}
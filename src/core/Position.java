@@ -1,23 +1,21 @@
 package core;
 
-public class Position {
-    //mutable
-    private int rank;
-    private int file;
+public final class Position {
+    //immutable; there is exactly one instance per square, see generateFromRankAndFile
+    private static final Position[] SQUARES = new Position[Chess.BOARD_RANKS * Chess.BOARD_FILES];
 
-    public Position() {
-        this.rank = 0;
-        this.file = 0;
+    static {
+        for (int rank = 0; rank < Chess.BOARD_RANKS; rank++)
+            for (int file = 0; file < Chess.BOARD_FILES; file++)
+                SQUARES[rank * Chess.BOARD_FILES + file] = new Position(rank, file);
     }
 
-    public Position(Position other) {
-        this.setRank(other.rank);
-        this.setFile(other.file);
-    }
+    private final int rank;
+    private final int file;
 
     private Position(int rank, int file) {
-        this.setRank(rank);
-        this.setFile(file);
+        this.rank = rank;
+        this.file = file;
     }
 
     public int getRank() {
@@ -28,16 +26,6 @@ public class Position {
         return this.file;
     }
 
-    public void setRank(int rank) {
-        if (rank >= 0 && rank < Chess.BOARD_RANKS)
-            this.rank = rank;
-    }
-
-    public void setFile(int file) {
-        if (file >= 0 && file < Chess.BOARD_FILES)
-            this.file = file;
-    }
-
     public String toString() {
         return "" + (char)('A' + this.file) + (Chess.BOARD_RANKS - this.rank);
     }
@@ -52,15 +40,26 @@ public class Position {
         return generateFromRankAndFile(Chess.BOARD_RANKS - s.charAt(1) + '0', s.charAt(0) - 'a');
     }
 
+    /**
+     * @return The canonical instance for the square, or null if it is off the board.
+     */
     public static Position generateFromRankAndFile(int rank, int file) {
         Position result = null;
         if (rank >= 0 && rank < Chess.BOARD_RANKS
                 && file >= 0 && file < Chess.BOARD_FILES
         )
-            result = new Position(rank, file);
+            result = SQUARES[rank * Chess.BOARD_FILES + file];
         return result;
     }
 
+    /**
+     * @param square A square index as described in {@link Bitboards}.
+     * @return The canonical instance for the square.
+     */
+    public static Position fromSquare(int square) {
+        return SQUARES[square];
+    }
+
     @Deprecated
     public static Position[] appendPositionsToArray(Position[] arr, Position... elements) {
         Position[] result = new Position[arr.length + elements.length];
@@ -74,9 +73,16 @@ public class Position {
     }
 
     public boolean equals(Object other) {
+        if (other == this)
+            return true;
         if (other == null || other.getClass() != Position.class)
             return false;
         Position otherPosition = (Position) other;
         return this.rank == otherPosition.rank && this.file == otherPosition.file;
     }
+
+    //the square index, which is unique per position
+    public int hashCode() {
+        return this.rank * Chess.BOARD_FILES + this.file;
+    }
 }
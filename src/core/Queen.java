@@ -1,8 +1,5 @@
 package core;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-
 public class Queen extends Piece {
     public Queen() {
         super();
@@ -20,18 +17,12 @@ public class Queen extends Piece {
     }
 
     public Position[] allDestinations(Chess chess, Position p, boolean includeDefending) {
-        ArrayList<Position> result = new ArrayList<>();
-
-        //result.addAll(Arrays.asList(Rook.reachablePositions(chess, p, includeDefending)));
-        //result.addAll(Arrays.asList(Rook.reachablePositions(chess, p, includeDefending)));
-        //Lists have not been covered, so we will iterate through and add these positions manually
-
-        Position[] rookPositions = Rook.reachablePositions(chess, p, includeDefending);
-        for (Position rp : rookPositions) result.add(rp);
-
-        Position[] bishopPositions = Bishop.reachablePositions(chess, p, includeDefending);
-        for (Position bp : bishopPositions) result.add(bp);
+        return Bitboards.toPositions(Queen.destinations(chess.getBitboards(), Bitboards.square(p),
+                this.getPieceColor().ordinal(), includeDefending));
+    }
 
-        return result.toArray(new Position[]{});
+    static long destinations(Board board, int square, int color, boolean includeDefending) {
+        return Rook.reachableSquares(board, square, color, includeDefending)
+                | Bishop.reachableSquares(board, square, color, includeDefending);
     }
 }
@@ -1,7 +1,5 @@
 package core;
 
-import java.util.ArrayList;
-
 public class Rook extends Piece {
     private boolean hasMoved;
 
@@ -40,37 +38,16 @@ public class Rook extends Piece {
     }
 
     public Position[] allDestinations(Chess chess, Position p, boolean includeDefending) {
-        return Rook.reachablePositions(chess, p, includeDefending);
+        return Bitboards.toPositions(Rook.reachableSquares(chess.getBitboards(), Bitboards.square(p),
+                this.getPieceColor().ordinal(), includeDefending));
     }
 
-    static Position[] reachablePositions(Chess chess, Position p, boolean includeDefending) {
+    static long reachableSquares(Board board, int square, int color, boolean includeDefending) {
         //Accessed by Queens from the same package, does not need to be public.
-        int[] rankOffsets = {1, -1, 0, 0};
-        int[] fileOffsets = {0, 0, 1, -1};
-
-        ArrayList<Position> result = new ArrayList<>();
-
-        for (int d = 0; d < 4; d++) {
-            int i = p.getRank() + rankOffsets[d];
-            int j = p.getFile() + fileOffsets[d];
-            while (i >= 0 && i < Chess.BOARD_RANKS
-                    && j >= 0 && j < Chess.BOARD_FILES) {
-                Position current = Position.generateFromRankAndFile(i, j);
-
-                if (chess.isEmpty(current))
-                    result.add(current);
-                else {
-                    if (includeDefending || chess.getPieceAt(current).getPieceColor()
-                            != chess.getPieceAt(p).getPieceColor())
-                        result.add(current);
-                    break;
-                }
-                i += rankOffsets[d];
-                j += fileOffsets[d];
-            }
-        }
-
-        return result.toArray(new Position[]{});
+        long result = Bitboards.rookAttacks(square, board.getOccupied());
+        if (!includeDefending)
+            result &= ~board.getOccupancy(color);
+        return result;
     }
 
 }
@@ -0,0 +1,113 @@
+package core;
+
+/**
+ * Decodes moves written in Standard Algebraic Notation, such as "Nbd7", "exd5", "O-O" or
+ * "Qh4#", against the position of a game.
+ */
+public final class San {
+    private San() {
+    }
+
+    /**
+     * Finds the legal move of the side to move that the SAN text stands for. Check, mate and
+     * annotation suffixes are ignored.
+     * @param scratch A list to generate candidate moves into; its content is discarded.
+     * @return The move encoded as described in {@link Moves}, or Moves.NONE if the text is not
+     * valid SAN or does not name exactly one legal move.
+     */
+    public static int decode(Chess chess, CharSequence san, MoveList scratch) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0)
+            end--;
+        if (end < 2)
+            return Moves.NONE;
+
+        Board board = chess.getBitboards();
+        int color = chess.getTurn().ordinal();
+
+        if (isCastling(san, end)) {
+            int king = board.getKingSquare(color);
+            int destination = end >= 5 ? king - 2 : king + 2;
+            return findMove(chess, scratch, Board.KING, destination, -1, -1, Board.NO_PIECE);
+        }
+
+        int start = 0;
+        int type = Board.PAWN;
+        int letter = Board.typeOfLetter(san.charAt(0));
+        if (letter > 0) {
+            type = letter;
+            start = 1;
+        }
+
+        //the promotion is written as "e8=Q", sometimes without the equals sign
+        int promotion = type == Board.PAWN ? Moves.promotionOf(san.charAt(end - 1)) : Board.NO_PIECE;
+        if (promotion != Board.NO_PIECE) {
+            end--;
+            if (end > 0 && san.charAt(end - 1) == '=')
+                end--;
+            if (end < 2)
+                return Moves.NONE;
+        }
+
+        int file = san.charAt(end - 2) - 'a';
+        int rank = '8' - san.charAt(end - 1);
+        if (file < 0 || file >= Chess.BOARD_FILES || rank < 0 || rank >= Chess.BOARD_RANKS)
+            return Moves.NONE;
+
+        //whatever is left between the piece letter and the destination narrows down the origin
+        int originFile = -1, originRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h')
+                originFile = c - 'a';
+            else if (c >= '1' && c <= '8')
+                originRank = '8' - c;
+            else if (c != 'x' && c != ':' && c != '-')
+                return Moves.NONE;
+        }
+
+        return findMove(chess, scratch, type, Bitboards.square(rank, file), originFile, originRank, promotion);
+    }
+
+    private static boolean isCastling(CharSequence san, int end) {
+        char o = san.charAt(0);
+        if (o != 'O' && o != '0')
+            return false;
+        if (end != 3 && end != 5)
+            return false;
+        for (int i = 0; i < end; i++)
+            if (san.charAt(i) != (i % 2 == 0 ? o : '-'))
+                return false;
+        return true;
+    }
+
+    //only the pseudo-legal candidates that fit the text are tried for legality
+    private static int findMove(Chess chess, MoveList scratch, int type, int destination,
+                                int originFile, int originRank, int promotion) {
+        Board board = chess.getBitboards();
+        Chess.PieceColor mover = chess.getTurn();
+        chess.generatePseudoLegalMoves(scratch);
+
+        int found = Moves.NONE;
+        for (int i = 0; i < scratch.size(); i++) {
+            int move = scratch.get(i);
+            int origin = Moves.getOrigin(move);
+            if (Moves.getDestination(move) != destination
+                    || Board.typeOf(board.getPieceCode(origin)) != type
+                    || (originFile >= 0 && Bitboards.fileOf(origin) != originFile)
+                    || (originRank >= 0 && Bitboards.rankOf(origin) != originRank)
+                    || Moves.getPromotion(move) != promotion)
+                continue;
+
+            chess.makeMove(move);
+            boolean legal = !chess.isKingUnderAttack(mover);
+            chess.unmakeMove();
+            if (!legal)
+                continue;
+            if (found != Moves.NONE)
+                return Moves.NONE;
+            found = move;
+        }
+        return found;
+    }
+}
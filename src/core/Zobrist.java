@@ -0,0 +1,55 @@
+package core;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random 64-bit keys for Zobrist hashing. The key of a position is the exclusive or of the keys
+ * of its features: every piece on its square, black to move, the castling rights and the file
+ * of a capturable en passant square. A move changes only a few features, so the key can be
+ * updated by xoring those keys in and out instead of being recomputed.
+ */
+public final class Zobrist {
+    //fixed seed, so that keys stay the same between runs and can be stored
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    private static final int SQUARES = Chess.BOARD_RANKS * Chess.BOARD_FILES;
+
+    private static final long[] PIECES = new long[2 * Board.PIECE_TYPES * SQUARES];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[Chess.BOARD_FILES];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < PIECES.length; i++)
+            PIECES[i] = random.nextLong();
+        //no castling rights hash to zero, like a missing feature
+        for (int i = 1; i < CASTLING.length; i++)
+            CASTLING[i] = random.nextLong();
+        for (int i = 0; i < EN_PASSANT.length; i++)
+            EN_PASSANT[i] = random.nextLong();
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int code, int square) {
+        return PIECES[code * SQUARES + square];
+    }
+
+    /**
+     * @param rights A combination of the castling right flags of {@link Chess}.
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    public static long enPassant(int file) {
+        return EN_PASSANT[file];
+    }
+
+    public static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}
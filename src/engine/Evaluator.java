@@ -0,0 +1,184 @@
+package engine;
+
+import core.Bitboards;
+import core.Board;
+import core.Chess;
+import core.PieceSquareTables;
+
+/**
+ * Static evaluation of positions, in centipawns from the point of view of the side to move.
+ * <p>
+ * Material and piece-square values come from the sums Board keeps up to date as pieces move,
+ * blended between middlegame and endgame by the phase of the game. Mobility, pawn structure
+ * and king safety are computed from the bitboards, visiting only the squares that hold
+ * pieces.
+ */
+public final class Evaluator {
+    //indexed by Board piece type; the king is never traded
+    public static final int[] PIECE_VALUES = PieceSquareTables.PIECE_VALUES;
+
+    //per attacked square that is not occupied by an own piece, indexed by piece type
+    private static final int[] MOBILITY_WEIGHTS = {0, 4, 5, 2, 1, 0};
+    private static final int DOUBLED_PAWN = -12;
+    private static final int ISOLATED_PAWN = -15;
+    //indexed by the number of ranks a passed pawn has advanced
+    private static final int[] PASSED_PAWN = {0, 5, 10, 20, 35, 60, 100, 0};
+    private static final int PAWN_SHIELD = 10;
+    //indexed by the number of attacks on the squares around the king, capped at the last entry
+    private static final int[] KING_ATTACKS = {0, 0, 10, 25, 45, 70, 100, 140, 180};
+    //indexed by piece type
+    private static final int[] KING_ATTACK_WEIGHTS = {1, 2, 2, 3, 5, 0};
+
+    private static final long[] FILES = new long[Chess.BOARD_FILES];
+    private static final long[] ADJACENT_FILES = new long[Chess.BOARD_FILES];
+    //the squares in front of a pawn on its own and the adjacent files, per color and square
+    private static final long[][] PASSED_PAWN_MASKS = new long[2][64];
+    //the squares in front of a king, one and two ranks ahead, per color and square
+    private static final long[][] SHIELD_MASKS = new long[2][64];
+
+    static {
+        for (int file = 0; file < Chess.BOARD_FILES; file++)
+            FILES[file] = Bitboards.FILE_A << file;
+        for (int file = 0; file < Chess.BOARD_FILES; file++)
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+
+        for (int square = 0; square < 64; square++) {
+            int rank = Bitboards.rankOf(square), file = Bitboards.fileOf(square);
+            long span = FILES[file] | ADJACENT_FILES[file];
+            //white moves towards rank index 0, black towards rank index 7
+            long whiteAhead = 0, blackAhead = 0;
+            for (int r = 0; r < rank; r++)
+                whiteAhead |= 0xFFL << (8 * r);
+            for (int r = rank + 1; r < Chess.BOARD_RANKS; r++)
+                blackAhead |= 0xFFL << (8 * r);
+            PASSED_PAWN_MASKS[Board.WHITE][square] = span & whiteAhead;
+            PASSED_PAWN_MASKS[Board.BLACK][square] = span & blackAhead;
+
+            long whiteShield = 0, blackShield = 0;
+            if (rank >= 1)
+                whiteShield |= 0xFFL << (8 * (rank - 1));
+            if (rank >= 2)
+                whiteShield |= 0xFFL << (8 * (rank - 2));
+            if (rank <= 6)
+                blackShield |= 0xFFL << (8 * (rank + 1));
+            if (rank <= 5)
+                blackShield |= 0xFFL << (8 * (rank + 2));
+            SHIELD_MASKS[Board.WHITE][square] = span & whiteShield;
+            SHIELD_MASKS[Board.BLACK][square] = span & blackShield;
+        }
+    }
+
+    private Evaluator() {
+    }
+
+    public static int evaluate(Chess chess) {
+        Board board = chess.getBitboards();
+        int phase = Math.min(board.getPhase(), PieceSquareTables.MAX_PHASE);
+
+        int middlegame = board.getMiddlegameScore(Board.WHITE) - board.getMiddlegameScore(Board.BLACK);
+        int endgame = board.getEndgameScore(Board.WHITE) - board.getEndgameScore(Board.BLACK);
+
+        int mobility = mobility(board, Board.WHITE) - mobility(board, Board.BLACK);
+        middlegame += mobility;
+        endgame += mobility;
+
+        int pawns = pawnStructure(board, Board.WHITE) - pawnStructure(board, Board.BLACK);
+        middlegame += pawns;
+        endgame += pawns;
+
+        //the king only needs shelter while there is enough material to attack it
+        middlegame += kingSafety(board, Board.WHITE) - kingSafety(board, Board.BLACK);
+
+        int score = (middlegame * phase + endgame * (PieceSquareTables.MAX_PHASE - phase))
+                / PieceSquareTables.MAX_PHASE;
+        return chess.getTurn() == Chess.PieceColor.WHITE ? score : -score;
+    }
+
+    /**
+     * @return The difference in material, from the point of view of the side to move.
+     */
+    public static int material(Chess chess) {
+        Board board = chess.getBitboards();
+        int score = 0;
+        for (int type = Board.PAWN; type < Board.KING; type++)
+            score += PIECE_VALUES[type] * (Long.bitCount(board.getPieces(Board.WHITE, type))
+                    - Long.bitCount(board.getPieces(Board.BLACK, type)));
+        return chess.getTurn() == Chess.PieceColor.WHITE ? score : -score;
+    }
+
+    private static int mobility(Board board, int color) {
+        long occupied = board.getOccupied();
+        long available = ~board.getOccupancy(color);
+        int score = 0;
+
+        for (long set = board.getPieces(color, Board.KNIGHT); set != 0; set &= set - 1)
+            score += MOBILITY_WEIGHTS[Board.KNIGHT]
+                    * Long.bitCount(Bitboards.knightAttacks(Long.numberOfTrailingZeros(set)) & available);
+        for (long set = board.getPieces(color, Board.BISHOP); set != 0; set &= set - 1)
+            score += MOBILITY_WEIGHTS[Board.BISHOP]
+                    * Long.bitCount(Bitboards.bishopAttacks(Long.numberOfTrailingZeros(set), occupied) & available);
+        for (long set = board.getPieces(color, Board.ROOK); set != 0; set &= set - 1)
+            score += MOBILITY_WEIGHTS[Board.ROOK]
+                    * Long.bitCount(Bitboards.rookAttacks(Long.numberOfTrailingZeros(set), occupied) & available);
+        for (long set = board.getPieces(color, Board.QUEEN); set != 0; set &= set - 1)
+            score += MOBILITY_WEIGHTS[Board.QUEEN]
+                    * Long.bitCount(Bitboards.queenAttacks(Long.numberOfTrailingZeros(set), occupied) & available);
+        return score;
+    }
+
+    private static int pawnStructure(Board board, int color) {
+        long pawns = board.getPieces(color, Board.PAWN);
+        long enemyPawns = board.getPieces(1 - color, Board.PAWN);
+        int score = 0;
+
+        for (int file = 0; file < Chess.BOARD_FILES; file++) {
+            int count = Long.bitCount(pawns & FILES[file]);
+            if (count > 1)
+                score += DOUBLED_PAWN * (count - 1);
+            if (count > 0 && (pawns & ADJACENT_FILES[file]) == 0)
+                score += ISOLATED_PAWN * count;
+        }
+
+        for (long set = pawns; set != 0; set &= set - 1) {
+            int square = Long.numberOfTrailingZeros(set);
+            if ((PASSED_PAWN_MASKS[color][square] & enemyPawns) == 0) {
+                int rank = Bitboards.rankOf(square);
+                //a pawn placed on its own back rank has not advanced at all
+                score += PASSED_PAWN[Math.max(0, color == Board.WHITE ? 6 - rank : rank - 1)];
+            }
+        }
+        return score;
+    }
+
+    private static int kingSafety(Board board, int color) {
+        int king = board.getKingSquare(color);
+        if (king == Board.NO_SQUARE)
+            return 0;
+
+        int score = PAWN_SHIELD * Math.min(3, Long.bitCount(SHIELD_MASKS[color][king]
+                & board.getPieces(color, Board.PAWN)));
+
+        //weighted attacks of the opponent on the squares around the king
+        int enemy = 1 - color;
+        long zone = Bitboards.kingAttacks(king) | Bitboards.bit(king);
+        long occupied = board.getOccupied();
+        int attacks = 0;
+        for (long set = board.getPieces(enemy, Board.KNIGHT); set != 0; set &= set - 1)
+            attacks += KING_ATTACK_WEIGHTS[Board.KNIGHT]
+                    * Long.bitCount(Bitboards.knightAttacks(Long.numberOfTrailingZeros(set)) & zone);
+        for (long set = board.getPieces(enemy, Board.BISHOP); set != 0; set &= set - 1)
+            attacks += KING_ATTACK_WEIGHTS[Board.BISHOP]
+                    * Long.bitCount(Bitboards.bishopAttacks(Long.numberOfTrailingZeros(set), occupied) & zone);
+        for (long set = board.getPieces(enemy, Board.ROOK); set != 0; set &= set - 1)
+            attacks += KING_ATTACK_WEIGHTS[Board.ROOK]
+                    * Long.bitCount(Bitboards.rookAttacks(Long.numberOfTrailingZeros(set), occupied) & zone);
+        for (long set = board.getPieces(enemy, Board.QUEEN); set != 0; set &= set - 1)
+            attacks += KING_ATTACK_WEIGHTS[Board.QUEEN]
+                    * Long.bitCount(Bitboards.queenAttacks(Long.numberOfTrailingZeros(set), occupied) & zone);
+        for (long set = board.getPieces(enemy, Board.PAWN); set != 0; set &= set - 1)
+            attacks += KING_ATTACK_WEIGHTS[Board.PAWN]
+                    * Long.bitCount(Bitboards.pawnAttacks(enemy, Long.numberOfTrailingZeros(set)) & zone);
+
+        return score - KING_ATTACKS[Math.min(attacks, KING_ATTACKS.length - 1)];
+    }
+}
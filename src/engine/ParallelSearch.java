@@ -0,0 +1,111 @@
+package engine;
+
+import core.Chess;
+import core.Moves;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches a position with several threads at once (lazy SMP). Every thread runs its own
+ * iterative deepening search on its own snapshot of the game, made with the Chess copy
+ * constructor, and all of them share one transposition table. The threads cooperate only
+ * through that table: the results of one thread cut off parts of the trees of the others.
+ * Helper threads start at staggered depths, so that they run ahead of the main thread.
+ * <p>
+ * The main thread alone decides when to stop; its limits end the whole search, and the
+ * deepest completed result of any thread is reported.
+ */
+public class ParallelSearch {
+    private final int threads;
+    private final TranspositionTable table;
+    private final ExecutorService executor;
+
+    public ParallelSearch(int threads, TranspositionTable table) {
+        this.threads = Math.max(1, threads);
+        this.table = table;
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ParallelSearch(int threads) {
+        this(threads, new TranspositionTable());
+    }
+
+    public ParallelSearch() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+
+    public TranspositionTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Searches the current position of the game, which is not modified.
+     * @param chess The game to search.
+     * @param limits The budget of the main thread. A node limit is shared among all threads.
+     * @return The result of the deepest completed iteration of any thread, with the nodes of
+     * all threads and the time until all of them stopped.
+     */
+    public SearchResult search(Chess chess, SearchLimits limits) {
+        long start = System.nanoTime();
+        long nodesPerThread = limits.getNodes() / this.threads;
+        //every thread gets the same limits; helpers go no deeper than the main thread, so they
+        //end on their own even if a stop comes late
+        SearchLimits threadLimits = new SearchLimits(limits.getDepth(),
+                limits.getNodes() > 0 ? Math.max(1, nodesPerThread) : 0, limits.getTimeMillis());
+
+        //the table generation changes once per search, not once per thread
+        this.table.newSearch();
+        ArrayList<Search> searches = new ArrayList<>();
+        ArrayList<Future<SearchResult>> results = new ArrayList<>();
+        for (int i = 0; i < this.threads; i++) {
+            Search search = new Search(new Chess(chess), this.table);
+            search.joinSharedSearch(i);
+            searches.add(search);
+        }
+        for (int i = 1; i < this.threads; i++) {
+            Search helper = searches.get(i);
+            results.add(this.executor.submit(() -> helper.search(threadLimits)));
+        }
+
+        //the calling thread is the main thread
+        SearchResult best = searches.get(0).search(threadLimits);
+        long nodes = best.getNodes();
+        for (int i = 1; i < this.threads; i++)
+            searches.get(i).stop();
+
+        for (Future<SearchResult> future : results) {
+            try {
+                SearchResult result = future.get();
+                nodes += result.getNodes();
+                if (result.getDepth() > best.getDepth() && result.getBestMove() != Moves.NONE)
+                    best = result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), nodes,
+                (System.nanoTime() - start) / 1_000_000, best.getPrincipalVariation());
+    }
+
+    /**
+     * Stops the worker threads. The object cannot search afterwards.
+     */
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+}
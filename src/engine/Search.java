@@ -0,0 +1,392 @@
+package engine;
+
+import core.Board;
+import core.Chess;
+import core.MoveList;
+import core.Moves;
+
+import java.util.Arrays;
+
+/**
+ * Chooses a move for the side to move of a game with a negamax alpha-beta search.
+ * <p>
+ * The search deepens iteratively until a limit is reached, and answers with the result of the
+ * last completed iteration. Leaves are resolved with a quiescence search over captures.
+ * Results are kept in a transposition table, which cuts off positions searched before and
+ * supplies the move tried first. The remaining moves are tried in the order: captures by most
+ * valuable victim and least valuable attacker, killer moves, and quiet moves by history score.
+ * <p>
+ * The game is searched in place with makeMove and unmakeMove and is left unchanged. A search
+ * object keeps its buffers between searches and must only be used by one thread at a time.
+ */
+public class Search {
+    public static final int MAX_PLY = 128;
+    public static final int MATE_SCORE = 32000;
+    public static final int DRAW_SCORE = 0;
+    public static final int INFINITY = 32500;
+
+    //the clock is read once per this many nodes plus one
+    private static final int CHECK_INTERVAL = 1023;
+
+    private static final int HASH_MOVE_ORDER = 1 << 30;
+    private static final int CAPTURE_ORDER = 1 << 29;
+    private static final int FIRST_KILLER_ORDER = 1 << 28;
+    private static final int SECOND_KILLER_ORDER = FIRST_KILLER_ORDER - 1;
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private Chess chess;
+    private final TranspositionTable table;
+    private final MoveList[] moveLists;
+    private final int[][] moveOrder;
+    private final int[][] killers;
+    //indexed by the piece code times 64 plus the destination square
+    private final int[] history;
+    private final int[][] principalVariation;
+    private final int[] principalVariationLength;
+
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private int rootBestMove;
+    private int startDepth;
+    private boolean sharesTable;
+    //off during the first iteration, which the limits cannot cut short
+    private boolean enforceLimits;
+    private volatile boolean stopped;
+
+    public Search(Chess chess) {
+        this(chess, new TranspositionTable());
+    }
+
+    /**
+     * Creates a search without a game, which gets one with every call of search(Chess, SearchLimits).
+     */
+    public Search(TranspositionTable table) {
+        this(null, table);
+    }
+
+    /**
+     * @param table The table to keep results in; it may be shared with other searches.
+     */
+    public Search(Chess chess, TranspositionTable table) {
+        this.chess = chess;
+        this.table = table;
+        this.moveLists = new MoveList[MAX_PLY];
+        for (int i = 0; i < MAX_PLY; i++)
+            this.moveLists[i] = new MoveList();
+        this.moveOrder = new int[MAX_PLY][MoveList.CAPACITY];
+        this.killers = new int[MAX_PLY][2];
+        this.history = new int[2 * Board.PIECE_TYPES * 64];
+        this.principalVariation = new int[MAX_PLY][MAX_PLY];
+        this.principalVariationLength = new int[MAX_PLY];
+        this.startDepth = 1;
+    }
+
+    /**
+     * Searches the current position of the game. The first iteration always completes, even
+     * beyond the limits, so that a move is found; only stop can interrupt it.
+     * @param limits The depth, node and time budget.
+     * @return The result of the deepest completed iteration. If the search was stopped before
+     * any iteration completed, the first legal move at depth 0 with the static evaluation.
+     */
+    public SearchResult search(SearchLimits limits) {
+        long start = System.nanoTime();
+        this.nodes = 0;
+        this.nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+        this.deadline = limits.getTimeMillis() > 0
+                ? start + limits.getTimeMillis() * 1_000_000L
+                : Long.MAX_VALUE;
+        this.rootBestMove = Moves.NONE;
+        //the threads of a shared search are made for one search each, and a stop that comes
+        //before such a thread gets to run must not be lost
+        if (!this.sharesTable) {
+            this.stopped = false;
+            this.table.newSearch();
+        }
+        for (int[] pair : this.killers)
+            Arrays.fill(pair, Moves.NONE);
+        //old history still helps ordering, but should not outweigh the new search
+        for (int i = 0; i < this.history.length; i++)
+            this.history[i] /= 8;
+
+        int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+        SearchResult result = null;
+
+        for (int depth = Math.min(this.startDepth, maxDepth); depth <= maxDepth; depth++) {
+            this.enforceLimits = result != null;
+            int score = this.negamax(depth, -INFINITY, INFINITY, 0);
+            if (this.stopped)
+                break;
+
+            int[] line = Arrays.copyOf(this.principalVariation[0], this.principalVariationLength[0]);
+            this.rootBestMove = line.length > 0 ? line[0] : Moves.NONE;
+            result = new SearchResult(this.rootBestMove, score, depth, this.nodes,
+                    (System.nanoTime() - start) / 1_000_000, line);
+
+            //nothing left to find once the side to move has no moves or a mate is proven
+            if (line.length == 0 || Math.abs(score) >= MATE_SCORE - depth)
+                break;
+        }
+
+        if (result == null) {
+            //stopped from outside during the first iteration; any legal move beats none
+            MoveList moves = this.moveLists[0];
+            this.chess.generateLegalMoves(moves);
+            int[] line = moves.isEmpty() ? new int[0] : new int[]{moves.get(0)};
+            result = new SearchResult(line.length > 0 ? line[0] : Moves.NONE, Evaluator.evaluate(this.chess), 0,
+                    this.nodes, (System.nanoTime() - start) / 1_000_000, line);
+        }
+        return result;
+    }
+
+    /**
+     * Searches another game with the buffers and the table of this search, so that one search
+     * can serve many games without allocating anything per move. The game stays the one that
+     * search(SearchLimits) searches afterwards.
+     * @see #search(SearchLimits)
+     */
+    public SearchResult search(Chess chess, SearchLimits limits) {
+        this.chess = chess;
+        return this.search(limits);
+    }
+
+    /**
+     * Makes a running search return as soon as possible. Can be called from any thread.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Prepares this search to be one of several threads searching the same position with a
+     * shared table. The caller then starts each new search on the table itself, and this search
+     * may only be used once, since search no longer clears an earlier stop. Iterative
+     * deepening begins at a later depth for every other thread, so that the threads do not all
+     * search the same depth at the same time.
+     */
+    void joinSharedSearch(int threadIndex) {
+        this.sharesTable = true;
+        this.startDepth = 1 + threadIndex % 2;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        this.principalVariationLength[ply] = ply;
+        Chess.PieceColor mover = this.chess.getTurn();
+        boolean inCheck = this.chess.isKingUnderAttack(mover);
+        //a check is answered one ply deeper, so that forced lines are not cut off
+        if (inCheck)
+            depth++;
+
+        if (depth <= 0)
+            return this.quiescence(alpha, beta, ply);
+        if (ply >= MAX_PLY - 1)
+            return Evaluator.evaluate(this.chess);
+        if (this.countNode())
+            return 0;
+        //within the search, a single repetition is enough to call the line a draw
+        if (ply > 0 && (this.chess.getHalfmoveClock() >= Chess.FIFTY_MOVE_PLIES
+                || this.chess.getRepetitionCount() >= 2 || this.chess.isInsufficientMaterial()))
+            return DRAW_SCORE;
+
+        long key = this.chess.getZobristKey();
+        long entry = this.table.probe(key);
+        int hashMove = ply == 0 ? this.rootBestMove : TranspositionTable.getMove(entry);
+        //the root always searches, so that it has a move and a line to report
+        if (entry != 0 && ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+            int score = fromTableScore(TranspositionTable.getScore(entry), ply);
+            int bound = TranspositionTable.getBound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+                return score;
+        }
+
+        MoveList moves = this.moveLists[ply];
+        this.chess.generatePseudoLegalMoves(moves);
+        this.orderMoves(moves, ply, hashMove);
+
+        int originalAlpha = alpha;
+        int bestMove = Moves.NONE;
+        int legalMoves = 0;
+        int best = -INFINITY;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = this.nextMove(moves, ply, i);
+            this.chess.makeMove(move);
+            if (this.chess.isKingUnderAttack(mover)) {
+                this.chess.unmakeMove();
+                continue;
+            }
+            legalMoves++;
+            int score = -this.negamax(depth - 1, -beta, -alpha, ply + 1);
+            this.chess.unmakeMove();
+
+            if (this.stopped)
+                return 0;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    this.updatePrincipalVariation(ply, move);
+                    if (score >= beta) {
+                        if (!Moves.isCapture(move))
+                            this.rememberQuietCutoff(move, depth, ply);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (legalMoves == 0)
+            return inCheck ? -MATE_SCORE + ply : DRAW_SCORE;
+
+        int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+                : best > originalAlpha ? TranspositionTable.EXACT
+                : TranspositionTable.UPPER_BOUND;
+        this.table.store(key, bestMove, toTableScore(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Mate scores count plies from the root. The table stores them counted from the position
+     * itself, so that they stay valid when the position is reached at another ply.
+     */
+    private static int toTableScore(int score, int ply) {
+        if (score >= MATE_SCORE - MAX_PLY)
+            return score + ply;
+        if (score <= -MATE_SCORE + MAX_PLY)
+            return score - ply;
+        return score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        if (score >= MATE_SCORE - MAX_PLY)
+            return score - ply;
+        if (score <= -MATE_SCORE + MAX_PLY)
+            return score + ply;
+        return score;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        this.principalVariationLength[ply] = ply;
+        if (this.countNode())
+            return 0;
+
+        int best = Evaluator.evaluate(this.chess);
+        if (best >= beta || ply >= MAX_PLY - 1)
+            return best;
+        if (best > alpha)
+            alpha = best;
+
+        Chess.PieceColor mover = this.chess.getTurn();
+        MoveList moves = this.moveLists[ply];
+        this.chess.generatePseudoLegalCaptures(moves);
+        this.orderMoves(moves, ply, Moves.NONE);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = this.nextMove(moves, ply, i);
+            this.chess.makeMove(move);
+            if (this.chess.isKingUnderAttack(mover)) {
+                this.chess.unmakeMove();
+                continue;
+            }
+            int score = -this.quiescence(-beta, -alpha, ply + 1);
+            this.chess.unmakeMove();
+
+            if (this.stopped)
+                return 0;
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    this.updatePrincipalVariation(ply, move);
+                    if (score >= beta)
+                        break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts a node and checks the limits every few nodes, once the first iteration is done.
+     * @return True, if the search has to stop.
+     */
+    private boolean countNode() {
+        this.nodes++;
+        if (this.enforceLimits && (this.nodes >= this.nodeLimit
+                || ((this.nodes & CHECK_INTERVAL) == 0 && System.nanoTime() >= this.deadline)))
+            this.stopped = true;
+        return this.stopped;
+    }
+
+    private void orderMoves(MoveList moves, int ply, int hashMove) {
+        Board board = this.chess.getBitboards();
+        int[] order = this.moveOrder[ply];
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int attacker = board.getPieceCode(Moves.getOrigin(move));
+            if (move == hashMove)
+                order[i] = HASH_MOVE_ORDER;
+            else if (Moves.isCapture(move))
+                //most valuable victim first, then least valuable attacker
+                order[i] = CAPTURE_ORDER + 16 * Evaluator.PIECE_VALUES[Board.typeOf(Moves.getCaptured(move))]
+                        - Board.typeOf(attacker);
+            else if (move == this.killers[ply][0])
+                order[i] = FIRST_KILLER_ORDER;
+            else if (move == this.killers[ply][1])
+                order[i] = SECOND_KILLER_ORDER;
+            else
+                order[i] = this.history[attacker * 64 + Moves.getDestination(move)];
+        }
+    }
+
+    /**
+     * Moves the best ordered of the remaining moves to position i, so that the list only gets
+     * sorted as far as the search gets before a cutoff.
+     */
+    private int nextMove(MoveList moves, int ply, int i) {
+        int[] order = this.moveOrder[ply];
+        int best = i;
+        for (int j = i + 1; j < moves.size(); j++)
+            if (order[j] > order[best])
+                best = j;
+        if (best != i) {
+            moves.swap(i, best);
+            int temp = order[i];
+            order[i] = order[best];
+            order[best] = temp;
+        }
+        return moves.get(i);
+    }
+
+    private void rememberQuietCutoff(int move, int depth, int ply) {
+        if (this.killers[ply][0] != move) {
+            this.killers[ply][1] = this.killers[ply][0];
+            this.killers[ply][0] = move;
+        }
+
+        //the piece has already been moved back to its origin
+        int index = this.chess.getBitboards().getPieceCode(Moves.getOrigin(move)) * 64
+                + Moves.getDestination(move);
+        this.history[index] += depth * depth;
+        if (this.history[index] > HISTORY_LIMIT)
+            for (int i = 0; i < this.history.length; i++)
+                this.history[i] /= 2;
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        int[] line = this.principalVariation[ply];
+        int[] next = this.principalVariation[ply + 1];
+        line[ply] = move;
+        int length = this.principalVariationLength[ply + 1];
+        for (int i = ply + 1; i < length; i++)
+            line[i] = next[i];
+        this.principalVariationLength[ply] = Math.max(length, ply + 1);
+    }
+}
@@ -0,0 +1,45 @@
+package engine;
+
+/**
+ * Budget of a search. Each limit is ignored when it is zero; the search stops as soon as one
+ * of the remaining limits is reached, but not before its first iteration has completed.
+ */
+public final class SearchLimits {
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+
+    public SearchLimits(int depth, long nodes, long timeMillis) {
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(0, nodes, 0);
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(0, 0, timeMillis);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public String toString() {
+        return "depth " + depth + ", nodes " + nodes + ", time " + timeMillis + " ms";
+    }
+}
@@ -0,0 +1,97 @@
+package engine;
+
+import core.Move;
+import core.Moves;
+
+/**
+ * The outcome of a search: the best move found, its score from the point of view of the side
+ * to move in centipawns, and the principal variation that leads to that score.
+ */
+public final class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final int[] principalVariation;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long elapsedMillis,
+                        int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.principalVariation = principalVariation.clone();
+    }
+
+    /**
+     * @return The best move encoded as described in {@link Moves}, or Moves.NONE if the side
+     * to move has no legal move.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return The best move, or null if the side to move has no legal move.
+     */
+    public Move getMove() {
+        if (bestMove == Moves.NONE)
+            return null;
+        return Moves.toMove(bestMove);
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return The depth of the last completed iteration, or 0 if the search was stopped before
+     * the first one completed; the score is then the static evaluation of the position.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE_SCORE - Search.MAX_PLY;
+    }
+
+    /**
+     * @return The number of own moves to mate, negative if the side to move gets mated, or 0
+     * if the score is not a mate score.
+     */
+    public int getMateDistance() {
+        if (!isMate())
+            return 0;
+        int plies = Search.MATE_SCORE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (isMate())
+            sb.append("mate ").append(getMateDistance());
+        else
+            sb.append("score ").append(score);
+        sb.append(", depth ").append(depth)
+                .append(", nodes ").append(nodes)
+                .append(", ").append(elapsedMillis).append(" ms, line");
+        for (int move : principalVariation)
+            sb.append(" ").append(Moves.toString(move));
+        return sb.toString();
+    }
+}
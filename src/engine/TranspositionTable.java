@@ -0,0 +1,153 @@
+package engine;
+
+import core.Moves;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, keyed by the Zobrist key of a position.
+ * <p>
+ * Entries live in a primitive long array, two longs each: the key xored with the data, and the
+ * data itself. The entries are grouped in buckets of two. The first entry of a bucket keeps
+ * the deepest result (results of older searches are replaced regardless); the second always
+ * takes the newest result that did not fit the first.
+ * <p>
+ * The table can be shared by several searching threads without locks. A reader only accepts
+ * an entry whose two longs xor to the probed key, so an entry torn by concurrent writers is
+ * seen as a miss rather than as wrong data.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    private static final int LONGS_PER_BUCKET = 4;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+
+    //data layout: move in bits 0-23, score in 24-39, depth in 40-47, bound in 48-49,
+    //generation in 50-55
+    private static final int SCORE_SHIFT = 24;
+    private static final int DEPTH_SHIFT = 40;
+    private static final int BOUND_SHIFT = 48;
+    private static final int GENERATION_SHIFT = 50;
+    private static final int GENERATION_MASK = 63;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int generation;
+
+    /**
+     * @param sizeMb The memory to use, in megabytes. It is rounded down to a power of two
+     *               number of buckets.
+     */
+    public TranspositionTable(int sizeMb) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) sizeMb * 1024 * 1024 / BYTES_PER_BUCKET));
+        //a Java array holds at most 2^31 - 1 elements
+        buckets = Math.min(buckets, 1L << 28);
+        this.table = new long[(int) buckets * LONGS_PER_BUCKET];
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     * @return The data stored for the key, or 0 if there is none.
+     */
+    public long probe(long key) {
+        int index = this.bucketIndex(key);
+        for (int i = index; i < index + LONGS_PER_BUCKET; i += 2) {
+            long data = this.table[i + 1];
+            if ((this.table[i] ^ data) == key && data != 0)
+                return data;
+        }
+        return 0;
+    }
+
+    /**
+     * @param score The score, with mate scores relative to the stored position.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long data = (move & 0xFFFFFFL)
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) this.generation << GENERATION_SHIFT);
+
+        int index = this.bucketIndex(key);
+        long preferredData = this.table[index + 1];
+        boolean samePosition = (this.table[index] ^ preferredData) == key;
+        if (preferredData != 0 && !samePosition && getDepth(preferredData) > depth
+                && getGeneration(preferredData) == this.generation)
+            index += 2;
+        else if (move == Moves.NONE && samePosition)
+            //keep the move of an earlier result for the same position
+            data |= preferredData & 0xFFFFFFL;
+
+        this.table[index] = key ^ data;
+        this.table[index + 1] = data;
+    }
+
+    /**
+     * Marks the start of a new search, so that the entries of earlier searches get replaced
+     * first.
+     */
+    public void newSearch() {
+        this.generation = (this.generation + 1) & GENERATION_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(this.table, 0);
+    }
+
+    /**
+     * @return The number of megabytes the table actually uses.
+     */
+    public long getSizeMb() {
+        return (long) this.table.length * Long.BYTES / (1024 * 1024);
+    }
+
+    /**
+     * Estimates how full the table is from a sample of its first buckets.
+     * @return The share of used entries of the current search, in permille.
+     */
+    public int getUsagePermille() {
+        int sample = Math.min(1000, (this.bucketMask + 1) * 2);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = this.table[2 * i + 1];
+            if (data != 0 && getGeneration(data) == this.generation)
+                used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    public static int getMove(long data) {
+        return (int) (data & 0xFFFFFF);
+    }
+
+    public static int getScore(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int getDepth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int getBound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 3);
+    }
+
+    private static int getGeneration(long data) {
+        return (int) ((data >>> GENERATION_SHIFT) & GENERATION_MASK);
+    }
+
+    private int bucketIndex(long key) {
+        //the low bits of the key choose the bucket, so mix in the high bits as well
+        return (int) ((key ^ (key >>> 32)) & this.bucketMask) * LONGS_PER_BUCKET;
+    }
+}
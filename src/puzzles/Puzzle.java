@@ -1,6 +1,7 @@
 package puzzles;
 
 import core.Chess;
+import core.Fen;
 
 public final class Puzzle implements Comparable<Puzzle> {
     public enum Difficulty {EASY, MEDIUM, HARD, UNSPECIFIED}
@@ -16,6 +17,14 @@ public final class Puzzle implements Comparable<Puzzle> {
 
         try {
             String[] components = details.split(",");
+            if (components[0].indexOf('/') >= 0) {
+                // <FEN>,<difficulty>: the position is kept as far as an arrangement can express it
+                Chess chess = Fen.parse(components[0]);
+                this.arrangement = chess.getArrangement();
+                this.turn = chess.getTurn();
+                this.difficulty = Difficulty.valueOf(components[1]);
+                return;
+            }
             Chess.verifyArrangement(components[0]);
             this.arrangement = components[0];
             this.turn = Chess.PieceColor.valueOf(components[1]);
@@ -25,6 +34,14 @@ public final class Puzzle implements Comparable<Puzzle> {
         }
     }
 
+    //for records that were verified before they were stored
+    Puzzle(String arrangement, Chess.PieceColor turn, Difficulty difficulty, String description) {
+        this.arrangement = arrangement;
+        this.turn = turn;
+        this.difficulty = difficulty;
+        this.description = description;
+    }
+
     public Puzzle(Puzzle other) {
         this.difficulty = other.difficulty;
         this.turn = other.turn;
@@ -50,6 +67,9 @@ public final class Puzzle implements Comparable<Puzzle> {
         return false;
     }
 
+    public int hashCode() {
+        return (arrangement.hashCode() * 31 + difficulty.ordinal()) * 31 + turn.ordinal();
+    }
 
     public String getDescription() {
         return description;
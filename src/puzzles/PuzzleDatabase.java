@@ -1,82 +1,237 @@
 package puzzles;
 
-import java.io.FileInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Scanner;
+import java.util.HashSet;
+import java.util.List;
 
+/**
+ * The puzzle collection. database.txt holds the compacted puzzles and database.bin the same
+ * puzzles in binary form; additions since the last compaction are appended to
+ * database.journal, which is replayed on load.
+ */
 public class PuzzleDatabase {
     public static final String databasePath = "database.txt";
+    public static final String storePath = "database.bin";
+    public static final String journalPath = "database.journal";
+    //the journal is folded into the database once it holds this many puzzles
+    public static final int COMPACTION_THRESHOLD = 1000;
     private ArrayList<Puzzle> puzzles;
+    private HashSet<Puzzle> known;
+    //while the database is unchanged, puzzles are decoded on demand from the binary store
+    private PuzzleStore store;
+    //built on first use and dropped whenever the puzzles change
+    private PuzzleIndex index;
+    //puzzles added since the last save, and the number of puzzles already in the journal
+    private ArrayList<Puzzle> pending = new ArrayList<Puzzle>();
+    private int journalSize;
+    private final PuzzleJournal journal = new PuzzleJournal(Paths.get(journalPath));
 
     public PuzzleDatabase() {
         load();
     }
     public void load() {
-        try {
-            Scanner sc = new Scanner(new FileInputStream(databasePath));
-            int puzzleCount = sc.nextInt();
-            puzzles = new ArrayList<Puzzle>(puzzleCount);
-            sc.nextLine();
-            for (int i = 0; i < puzzleCount; i++) {
-                Puzzle current = new Puzzle(sc.nextLine(), sc.nextLine());
-                if (!contains(current))
-                    puzzles.add(current);
+        index = null;
+        pending.clear();
+        journalSize = 0;
+
+        File text = new File(databasePath), binary = new File(storePath);
+        store = null;
+        if (binary.isFile() && (!text.exists() || binary.lastModified() >= text.lastModified())) {
+            try {
+                store = new PuzzleStore(binary.toPath());
+                puzzles = null;
+                known = null;
+            } catch (IOException e) {
+                System.out.println("Cannot open the binary database, reading the text one.");
             }
-            Collections.sort(puzzles);
-            sc.close();
-        } catch (FileNotFoundException e) {
-            System.out.println("Cannot open the database file.");
-            System.exit(0);
-        } catch (MalformedPuzzleException e) {
-            System.out.println("Malformed puzzle in the database.");
-            System.exit(0);
         }
+        if (store == null) {
+            loadText();
+            writeStore();
+        }
+
+        if (journal.exists())
+            replayJournal();
     }
+    /**
+     * Appends the puzzles added since the last save to the journal, and compacts the
+     * database once the journal has grown past COMPACTION_THRESHOLD.
+     */
     public void save() {
+        if (pending.isEmpty())
+            return;
+        try {
+            journal.append(pending);
+            journalSize += pending.size();
+            pending.clear();
+        } catch (IOException e) {
+            System.out.println("Cannot save into the database journal.");
+            return;
+        }
+        if (journalSize >= COMPACTION_THRESHOLD)
+            compact();
+    }
+    /**
+     * Rewrites the database files with every puzzle and empties the journal. Each file is
+     * written next to its destination and renamed over it, so that a crash leaves either the
+     * old or the new file, and the journal is only removed once both are in place.
+     */
+    public void compact() {
+        materialize();
         try {
-            PrintWriter pw = new PrintWriter(databasePath);
-            pw.println(puzzles.size());
-            for (int i = 0; i < puzzles.size(); i++)
-                pw.println(puzzles.get(i));
-            pw.close();
+            writeAtomically(Paths.get(databasePath), temp -> {
+                try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    writer.write(puzzles.size() + "\n");
+                    for (Puzzle puzzle : puzzles) {
+                        writer.write(puzzle.toString());
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                    out.getFD().sync();
+                }
+            });
+            writeAtomically(Paths.get(storePath), temp -> PuzzleStore.write(puzzles, temp));
+            pending.clear();
+            journal.delete();
+            journalSize = 0;
+        } catch (IOException e) {
+            System.out.println("Cannot compact the database files.");
+        }
+    }
+    public void addPuzzlesFromFile(String filename) {
+        materialize();
+        index = null;
+        try (PuzzleReader reader = new PuzzleReader(
+                Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8), false)) {
+            pending.addAll(addAll(reader));
+            reportSkipped(reader, filename);
+        } catch (NoSuchFileException | InvalidPathException e) {
+            System.out.println("Cannot open the specified file with puzzles.");
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Cannot read the specified file with puzzles.");
+        }
+    }
+    public int getSize() {
+        return store != null ? store.getSize() : puzzles.size();
+    }
+    public Puzzle getPuzzle(int i) {
+        return store != null ? store.getPuzzle(i) : puzzles.get(i);
+    }
+    public PuzzleIndex getIndex() {
+        if (index == null)
+            index = new PuzzleIndex(this);
+        return index;
+    }
+
+    private void loadText() {
+        puzzles = new ArrayList<Puzzle>();
+        known = new HashSet<Puzzle>();
+        try (PuzzleReader reader = new PuzzleReader(new FileReader(databasePath, StandardCharsets.UTF_8), true)) {
+            if (reader.getExpectedCount() > 0) {
+                puzzles.ensureCapacity(reader.getExpectedCount());
+                known = new HashSet<Puzzle>(reader.getExpectedCount() * 2);
+            }
+            addAll(reader);
+            reportSkipped(reader, databasePath);
         } catch (FileNotFoundException e) {
-            System.out.println("Cannot save into the database file.");
+            System.out.println("Cannot open the database file.");
+            System.exit(0);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Cannot read the database file.");
             System.exit(0);
         }
     }
-    public void addPuzzlesFromFile(String filename) {
+
+    //a record torn by a crash fails its checksum and is skipped
+    private void replayJournal() {
+        materialize();
         try {
-            Scanner sc = new Scanner(new FileInputStream(filename));
-            while (sc.hasNextLine()) {
-                Puzzle current = new Puzzle(sc.nextLine(), sc.nextLine());
-                if (!contains(current))
+            for (Puzzle current : journal.read()) {
+                journalSize++;
+                if (known.add(current))
                     puzzles.add(current);
             }
             Collections.sort(puzzles);
-            sc.close();
-        } catch (FileNotFoundException e) {
-            System.out.println("Cannot open the specified file with puzzles.");
-            System.exit(0);
+            if (journal.getSkipped() > 0)
+                System.out.println("Skipped " + journal.getSkipped() + " damaged records in " + journalPath + ".");
+        } catch (IOException e) {
+            System.out.println("Cannot read the database journal.");
         }
-        catch (MalformedPuzzleException e) {
-            System.out.println("Malformed puzzle in the database.");
-            System.exit(0);
+    }
+
+    private void writeStore() {
+        try {
+            writeAtomically(Paths.get(storePath), temp -> PuzzleStore.write(puzzles, temp));
+        } catch (IOException e) {
+            System.out.println("Cannot save into the binary database file.");
         }
     }
-    public int getSize() {
-        return puzzles.size();
+
+    private interface FileContents {
+        void write(Path temp) throws IOException;
     }
-    public Puzzle getPuzzle(int i) {
-        return puzzles.get(i);
+
+    private static void writeAtomically(Path path, FileContents contents) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            contents.write(temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    //decodes every stored puzzle, before the database gets modified
+    private void materialize() {
+        if (store == null)
+            return;
+        puzzles = new ArrayList<Puzzle>(store.getSize());
+        known = new HashSet<Puzzle>(store.getSize() * 2);
+        for (int i = 0; i < store.getSize(); i++) {
+            Puzzle current = store.getPuzzle(i);
+            puzzles.add(current);
+            known.add(current);
+        }
+        store = null;
+    }
+
+    //returns the puzzles that were not in the database yet
+    private List<Puzzle> addAll(PuzzleReader reader) {
+        ArrayList<Puzzle> added = new ArrayList<Puzzle>();
+        while (reader.hasNext()) {
+            Puzzle current = reader.next();
+            if (known.add(current)) {
+                puzzles.add(current);
+                added.add(current);
+            }
+        }
+        Collections.sort(puzzles);
+        return added;
     }
 
-    private boolean contains(Puzzle p) {
-        for (int i = 0; i < puzzles.size(); i++)
-            if (puzzles.get(i).equals(p))
-                return true;
-        return false;
+    private static void reportSkipped(PuzzleReader reader, String filename) {
+        if (reader.getSkipped() == 0)
+            return;
+        System.out.println("Skipped " + reader.getSkipped() + " malformed puzzles in " + filename + ":");
+        for (String error : reader.getErrors())
+            System.out.println("  " + error);
     }
 }
@@ -0,0 +1,170 @@
+package puzzles;
+
+import core.Board;
+import core.Chess;
+import core.IllegalArrangementException;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * In-memory secondary indexes over the puzzles of a database, keyed by puzzle id (the position
+ * in the database). Every lookup returns a fresh BitSet, so that queries are answered by
+ * intersecting sets instead of scanning the puzzles:
+ * <pre>
+ * BitSet ids = index.withDifficulty(Puzzle.Difficulty.HARD);
+ * ids.and(index.withTurn(Chess.PieceColor.WHITE));
+ * ids.and(index.withPieces(Board.code(Board.WHITE, Board.QUEEN), 1));
+ * ids.and(index.withPieces(Board.code(Board.BLACK, Board.QUEEN), 1));
+ * </pre>
+ */
+public class PuzzleIndex {
+    //piece counts are indexed up to this value, larger counts fall into the last set
+    public static final int MAX_COUNT = 8;
+    private static final int[] NO_IDS = new int[0];
+
+    private final int size;
+    private final BitSet[] byDifficulty;
+    private final BitSet[] byTurn;
+    //byCount[code][k - 1] holds the puzzles with at least k pieces of the code
+    private final BitSet[][] byCount;
+    private final HashMap<Long, BitSet> byMaterial;
+    private final HashMap<Long, int[]> byKey;
+
+    public PuzzleIndex(PuzzleDatabase database) {
+        this.size = database.getSize();
+        this.byDifficulty = new BitSet[Puzzle.Difficulty.values().length];
+        for (int i = 0; i < this.byDifficulty.length; i++)
+            this.byDifficulty[i] = new BitSet(this.size);
+        this.byTurn = new BitSet[Chess.PieceColor.values().length];
+        for (int i = 0; i < this.byTurn.length; i++)
+            this.byTurn[i] = new BitSet(this.size);
+        this.byCount = new BitSet[2 * Board.PIECE_TYPES][MAX_COUNT];
+        for (BitSet[] sets : this.byCount)
+            for (int k = 0; k < MAX_COUNT; k++)
+                sets[k] = new BitSet(this.size);
+        this.byMaterial = new HashMap<>();
+        this.byKey = new HashMap<>(this.size * 2);
+
+        int[] counts = new int[2 * Board.PIECE_TYPES];
+        for (int id = 0; id < this.size; id++) {
+            Puzzle puzzle = database.getPuzzle(id);
+            this.byDifficulty[puzzle.getDifficulty().ordinal()].set(id);
+            this.byTurn[puzzle.getTurn().ordinal()].set(id);
+
+            countPieces(puzzle.getArrangement(), counts);
+            for (int code = 0; code < counts.length; code++)
+                for (int k = 0; k < Math.min(counts[code], MAX_COUNT); k++)
+                    this.byCount[code][k].set(id);
+            this.byMaterial.computeIfAbsent(signature(counts), s -> new BitSet()).set(id);
+
+            try {
+                long key = new Chess(puzzle.getArrangement(), puzzle.getTurn()).getZobristKey();
+                int[] ids = this.byKey.get(key);
+                if (ids == null)
+                    ids = new int[]{id};
+                else {
+                    ids = Arrays.copyOf(ids, ids.length + 1);
+                    ids[ids.length - 1] = id;
+                }
+                this.byKey.put(key, ids);
+            } catch (IllegalArrangementException e) {
+                //the puzzle cannot be set up, so no position will ever match it
+            }
+        }
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public BitSet withDifficulty(Puzzle.Difficulty difficulty) {
+        return (BitSet) this.byDifficulty[difficulty.ordinal()].clone();
+    }
+
+    public BitSet withTurn(Chess.PieceColor turn) {
+        return (BitSet) this.byTurn[turn.ordinal()].clone();
+    }
+
+    /**
+     * @param code A piece code as defined by Board.
+     * @return The puzzles with at least the given number of pieces of the code. Counts
+     * beyond MAX_COUNT are treated as MAX_COUNT.
+     */
+    public BitSet withPieces(int code, int minimum) {
+        if (minimum <= 0) {
+            BitSet all = new BitSet(this.size);
+            all.set(0, this.size);
+            return all;
+        }
+        return (BitSet) this.byCount[code][Math.min(minimum, MAX_COUNT) - 1].clone();
+    }
+
+    /**
+     * @return The puzzles with exactly the material of the given signature.
+     * @see #signature(String)
+     */
+    public BitSet withMaterial(long signature) {
+        BitSet ids = this.byMaterial.get(signature);
+        return ids == null ? new BitSet() : (BitSet) ids.clone();
+    }
+
+    /**
+     * @return The ids of the puzzles that start from the position of the game, possibly
+     * with different difficulties.
+     */
+    public int[] withPosition(Chess chess) {
+        int[] ids = this.byKey.get(chess.getZobristKey());
+        return ids == null ? NO_IDS : ids.clone();
+    }
+
+    /**
+     * @return True, if a puzzle starts from the position with the given Zobrist key.
+     */
+    public boolean containsPosition(long key) {
+        return this.byKey.containsKey(key);
+    }
+
+    /**
+     * Picks a puzzle id uniformly at random from a query result.
+     * @return The id, or -1 if the set is empty.
+     */
+    public static int pick(BitSet ids, Random random) {
+        int count = ids.cardinality();
+        if (count == 0)
+            return -1;
+        int id = ids.nextSetBit(0);
+        for (int n = random.nextInt(count); n > 0; n--)
+            id = ids.nextSetBit(id + 1);
+        return id;
+    }
+
+    /**
+     * Computes the material signature of an arrangement: the number of pieces of every code
+     * except the kings, four bits each.
+     */
+    public static long signature(String arrangement) {
+        int[] counts = new int[2 * Board.PIECE_TYPES];
+        countPieces(arrangement, counts);
+        return signature(counts);
+    }
+
+    private static long signature(int[] counts) {
+        long signature = 0;
+        for (int code = 0; code < counts.length; code++)
+            if (Board.typeOf(code) != Board.KING)
+                signature = signature << 4 | Math.min(counts[code], 0xF);
+        return signature;
+    }
+
+    private static void countPieces(String arrangement, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < arrangement.length(); i++) {
+            int code = Board.codeOf(arrangement.charAt(i));
+            if (code != Board.NO_PIECE)
+                counts[code]++;
+        }
+    }
+}
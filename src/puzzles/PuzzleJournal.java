@@ -0,0 +1,120 @@
+package puzzles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the puzzles added since the last compaction. Every puzzle is one line:
+ * <pre>
+ * crc      8 hex digits, the CRC-32 of the UTF-8 bytes of the rest of the line after the tab
+ * details  arrangement, turn and difficulty as in the text database, then a tab
+ * text     the description
+ * </pre>
+ * A record torn by a crash fails its checksum and is skipped on replay. Appends always start
+ * on a line of their own, so a torn record never swallows the records written after it.
+ */
+public class PuzzleJournal {
+    private static final int CRC_LENGTH = 8;
+
+    private final Path path;
+    private int skipped;
+
+    public PuzzleJournal(Path path) {
+        this.path = path;
+    }
+
+    public boolean exists() {
+        return Files.isRegularFile(this.path);
+    }
+
+    /**
+     * Appends the puzzles and waits until they are on the disk.
+     */
+    public void append(List<Puzzle> puzzles) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (Puzzle puzzle : puzzles)
+            records.append(record(puzzle)).append('\n');
+
+        try (RandomAccessFile file = new RandomAccessFile(this.path.toFile(), "rw")) {
+            long length = file.length();
+            if (length > 0) {
+                file.seek(length - 1);
+                //the last append was torn inside a record; end that line first
+                if (file.read() != '\n')
+                    records.insert(0, '\n');
+            }
+            file.seek(length);
+            file.write(records.toString().getBytes(StandardCharsets.UTF_8));
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * Reads every intact record. Damaged ones are counted by getSkipped.
+     */
+    public List<Puzzle> read() throws IOException {
+        ArrayList<Puzzle> puzzles = new ArrayList<Puzzle>();
+        this.skipped = 0;
+        //a record cut inside a character decodes to replacement characters and fails its checksum
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(this.path), StandardCharsets.UTF_8), PuzzleReader.BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+                Puzzle puzzle = parse(line);
+                if (puzzle != null)
+                    puzzles.add(puzzle);
+                else
+                    this.skipped++;
+            }
+        }
+        return puzzles;
+    }
+
+    /**
+     * @return The number of damaged records found by the last read.
+     */
+    public int getSkipped() {
+        return this.skipped;
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(this.path);
+    }
+
+    static String record(Puzzle puzzle) {
+        //the description never holds a line break, and the details never hold a tab
+        String payload = puzzle.toString().replace('\n', '\t');
+        return String.format("%08x", checksum(payload)) + "\t" + payload;
+    }
+
+    //returns null for a damaged record
+    static Puzzle parse(String line) {
+        if (line.length() <= CRC_LENGTH || line.charAt(CRC_LENGTH) != '\t')
+            return null;
+        String payload = line.substring(CRC_LENGTH + 1);
+        int separator = payload.indexOf('\t');
+        try {
+            if (Long.parseLong(line.substring(0, CRC_LENGTH), 16) != checksum(payload) || separator < 0)
+                return null;
+            return new Puzzle(payload.substring(0, separator), payload.substring(separator + 1));
+        } catch (NumberFormatException | MalformedPuzzleException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,333 @@
+package puzzles;
+
+import core.Chess;
+import core.Fen;
+import core.IllegalArrangementException;
+import core.PgnReader;
+import engine.Evaluator;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Turns archived games into puzzles. The work is split into stages connected by bounded
+ * queues, so a slow stage holds back the ones before it instead of piling up positions:
+ * <ol>
+ * <li>the calling thread reads the PGN, replays the games and drops positions it has seen
+ * recently, which catches the openings and transpositions shared by many games;</li>
+ * <li>a pool of workers searches every remaining position and keeps forced mates and moves
+ * that win material;</li>
+ * <li>a writer thread drops puzzles whose position was already found or is in the database,
+ * by Zobrist key, and appends the rest as records that addPuzzlesFromFile accepts.</li>
+ * </ol>
+ * If a stage fails, the others are stopped and the failure is thrown to the caller.
+ */
+public class PuzzleMiner {
+    public static final int QUEUE_CAPACITY = 1024;
+    //opening positions rarely hold a tactic and are shared by many games
+    public static final int MIN_PLY = 10;
+    public static final int MAX_MATE_DISTANCE = 4;
+    //how much the search has to gain over the material on the board, in centipawns
+    public static final int MATERIAL_GAIN = 300;
+    public static final int TABLE_SIZE_MB = 4;
+    public static final int PROGRESS_INTERVAL_SECONDS = 5;
+    //keys of recently replayed positions; a fixed size keeps the memory bounded for any archive
+    public static final int RECENT_POSITIONS = 1 << 22;
+    //how often the reader, waiting for room in a queue, checks whether another stage has failed
+    private static final long POLL_MILLIS = 100;
+
+    private static final Candidate END = new Candidate(null, 0);
+
+    private static final class Candidate {
+        private final String fen;
+        private final long key;
+        //set by the search stage when the position holds a tactic
+        private Puzzle puzzle;
+
+        private Candidate(String fen, long key) {
+            this.fen = fen;
+            this.key = key;
+        }
+    }
+
+    private final SearchLimits limits;
+    private final int workers;
+    private final PuzzleIndex known;
+
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong positions = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong searched = new AtomicLong();
+    private final AtomicLong found = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * @param limits The limits of the search that looks for a tactic in every position.
+     * @param known The puzzles that are already in the database, or null.
+     */
+    public PuzzleMiner(SearchLimits limits, int workers, PuzzleIndex known) {
+        this.limits = limits;
+        this.workers = Math.max(1, workers);
+        this.known = known;
+    }
+
+    /**
+     * Mines every game of the PGN input and writes the puzzles found.
+     * @return The number of puzzles written.
+     */
+    public long mine(Reader pgn, Writer output) throws IOException {
+        BlockingQueue<Candidate> candidateQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Candidate> puzzleQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService pool = Executors.newFixedThreadPool(this.workers + 2, runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-miner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        //the first failure of a stage on the pool; the stages around it would otherwise wait
+        //forever on queues that nobody serves any more
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        try {
+            AtomicInteger running = new AtomicInteger(this.workers);
+            for (int i = 0; i < this.workers; i++)
+                pool.execute(stage(() -> detect(candidateQueue, puzzleQueue, running), failure, pool));
+            Future<?> writer = pool.submit(stage(() -> write(puzzleQueue, output), failure, pool));
+            pool.execute(() -> reportProgress(candidateQueue, puzzleQueue, start));
+
+            read(pgn, candidateQueue, failure);
+            for (int i = 0; i < this.workers; i++)
+                if (!put(candidateQueue, END, failure))
+                    break;
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable cause = failure.get();
+        if (cause instanceof UncheckedIOException)
+            throw ((UncheckedIOException) cause).getCause();
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+
+        printProgress(candidateQueue, puzzleQueue, start);
+        return this.found.get();
+    }
+
+    public long getGames() {
+        return this.games.get();
+    }
+
+    public long getPositions() {
+        return this.positions.get();
+    }
+
+    public long getPuzzles() {
+        return this.found.get();
+    }
+
+    /**
+     * Wraps a stage that runs on the pool. If it fails, the failure is kept for the caller and
+     * the pool is shut down, which interrupts the other stages.
+     */
+    private static Runnable stage(Runnable body, AtomicReference<Throwable> failure, ExecutorService pool) {
+        return () -> {
+            try {
+                body.run();
+            } catch (RuntimeException | Error e) {
+                if (failure.compareAndSet(null, e))
+                    pool.shutdownNow();
+            }
+        };
+    }
+
+    /**
+     * Waits for room in the queue like put, but gives up once a stage has failed.
+     * @return True, if the candidate was queued.
+     */
+    private static boolean put(BlockingQueue<Candidate> queue, Candidate candidate,
+                               AtomicReference<Throwable> failure) throws InterruptedException {
+        while (!queue.offer(candidate, POLL_MILLIS, TimeUnit.MILLISECONDS))
+            if (failure.get() != null)
+                return false;
+        return true;
+    }
+
+    //stage 1: parsing and replaying is sequential, so it runs on the calling thread
+    private void read(Reader pgn, BlockingQueue<Candidate> queue, AtomicReference<Throwable> failure)
+            throws IOException, InterruptedException {
+        long[] recent = new long[RECENT_POSITIONS];
+        PgnReader reader = new PgnReader(pgn);
+        InterruptedException[] interrupted = new InterruptedException[1];
+
+        PgnReader.GameVisitor visitor = new PgnReader.GameVisitor() {
+            private int ply;
+
+            public void startGame(Map<String, String> tags, Chess chess) {
+                this.ply = 0;
+            }
+
+            public void move(Chess chess, int move) {
+                positions.incrementAndGet();
+                if (++this.ply < MIN_PLY || interrupted[0] != null || failure.get() != null)
+                    return;
+                long key = chess.getZobristKey();
+                int slot = (int) key & (RECENT_POSITIONS - 1);
+                if (recent[slot] == key || (known != null && known.containsPosition(key)))
+                    return;
+                recent[slot] = key;
+                try {
+                    if (put(queue, new Candidate(Fen.toFen(chess), key), failure))
+                        candidates.incrementAndGet();
+                } catch (InterruptedException e) {
+                    interrupted[0] = e;
+                }
+            }
+
+            public void endGame(String result) {
+                games.incrementAndGet();
+            }
+
+            public void error(long line, String message) {
+                errors.incrementAndGet();
+            }
+        };
+        //a failed stage ends the reading after the current game
+        while (interrupted[0] == null && failure.get() == null)
+            if (!reader.readGame(visitor))
+                break;
+        if (interrupted[0] != null)
+            throw interrupted[0];
+    }
+
+    //stage 2: every worker searches its positions with one search and table of its own
+    private void detect(BlockingQueue<Candidate> candidateQueue, BlockingQueue<Candidate> puzzleQueue,
+                        AtomicInteger running) {
+        Search search = new Search(new TranspositionTable(TABLE_SIZE_MB));
+        try {
+            while (true) {
+                Candidate candidate = candidateQueue.take();
+                if (candidate == END)
+                    break;
+                candidate.puzzle = detect(candidate, search);
+                this.searched.incrementAndGet();
+                if (candidate.puzzle != null)
+                    puzzleQueue.put(candidate);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //the last worker to stop ends the writer, also when a worker fails
+            if (running.decrementAndGet() == 0)
+                endQueue(puzzleQueue);
+        }
+    }
+
+    private static void endQueue(BlockingQueue<Candidate> queue) {
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Puzzle detect(Candidate candidate, Search search) {
+        Chess chess;
+        try {
+            chess = Fen.parse(candidate.fen);
+        } catch (IllegalArrangementException e) {
+            this.errors.incrementAndGet();
+            return null;
+        }
+
+        int material = Evaluator.material(chess);
+        SearchResult result = search.search(chess, this.limits);
+        String side = chess.getTurn() == Chess.PieceColor.WHITE ? "White" : "Black";
+
+        Puzzle.Difficulty difficulty;
+        String description;
+        int mate = result.getMateDistance();
+        if (mate > 0 && mate <= MAX_MATE_DISTANCE) {
+            difficulty = mate == 1 ? Puzzle.Difficulty.EASY
+                    : mate == 2 ? Puzzle.Difficulty.MEDIUM : Puzzle.Difficulty.HARD;
+            description = side + " mates in " + mate + ".";
+        } else if (!result.isMate() && result.getScore() - material >= MATERIAL_GAIN
+                && Math.abs(material) < MATERIAL_GAIN) {
+            difficulty = Puzzle.Difficulty.UNSPECIFIED;
+            description = side + " to win material.";
+        } else
+            return null;
+
+        return new Puzzle(chess.getArrangement(), chess.getTurn(), difficulty, description);
+    }
+
+    //stage 3
+    private void write(BlockingQueue<Candidate> queue, Writer output) {
+        HashSet<Long> written = new HashSet<>();
+        try {
+            while (true) {
+                Candidate candidate = queue.take();
+                if (candidate == END)
+                    break;
+                if ((this.known != null && this.known.containsPosition(candidate.key))
+                        || !written.add(candidate.key))
+                    continue;
+                output.write(candidate.puzzle.toString());
+                output.write('\n');
+                this.found.incrementAndGet();
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reportProgress(BlockingQueue<Candidate> candidateQueue, BlockingQueue<Candidate> puzzleQueue,
+                                long start) {
+        try {
+            while (true) {
+                TimeUnit.SECONDS.sleep(PROGRESS_INTERVAL_SECONDS);
+                printProgress(candidateQueue, puzzleQueue, start);
+            }
+        } catch (InterruptedException e) {
+            //the pipeline has finished
+        }
+    }
+
+    private void printProgress(BlockingQueue<Candidate> candidateQueue, BlockingQueue<Candidate> puzzleQueue,
+                               long start) {
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        System.out.printf("%.0f s: %d games, %d positions, %d searched of %d (%.0f/s), %d puzzles, "
+                        + "%d errors, queues %d/%d%n",
+                seconds, this.games.get(), this.positions.get(), this.searched.get(), this.candidates.get(),
+                this.searched.get() / seconds, this.found.get(), this.errors.get(),
+                candidateQueue.size(), puzzleQueue.size());
+    }
+}
@@ -0,0 +1,122 @@
+package puzzles;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads puzzles lazily from a character stream, one record of two lines at a time: the details
+ * line (arrangement, turn and difficulty) followed by the description. Malformed records are
+ * skipped and counted instead of ending the read.
+ */
+public class PuzzleReader implements Iterator<Puzzle>, Closeable {
+    public static final int BUFFER_SIZE = 1 << 16;
+    public static final int MAX_REPORTED_ERRORS = 10;
+
+    private final BufferedReader reader;
+    private int expectedCount = -1;
+    private long lineNumber;
+    private Puzzle next;
+    private int skipped;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * @param header Whether the stream starts with a line holding the number of puzzles,
+     *               as the database file does.
+     */
+    public PuzzleReader(Reader reader, boolean header) throws IOException {
+        this.reader = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader, BUFFER_SIZE);
+        if (header) {
+            String line = readLine();
+            try {
+                if (line != null)
+                    this.expectedCount = Integer.parseInt(line.trim());
+            } catch (NumberFormatException e) {
+                reportError(this.lineNumber, "invalid puzzle count");
+            }
+        }
+    }
+
+    public boolean hasNext() {
+        if (this.next == null)
+            this.next = readPuzzle();
+        return this.next != null;
+    }
+
+    public Puzzle next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Puzzle puzzle = this.next;
+        this.next = null;
+        return puzzle;
+    }
+
+    /**
+     * @return The number of puzzles announced by the header, or -1 if there is none.
+     */
+    public int getExpectedCount() {
+        return this.expectedCount;
+    }
+
+    public int getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * @return The first MAX_REPORTED_ERRORS problems, each with the line it was found on.
+     */
+    public List<String> getErrors() {
+        return this.errors;
+    }
+
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    private Puzzle readPuzzle() {
+        while (true) {
+            String details = readLine();
+            if (details == null)
+                return null;
+            if (details.isEmpty())
+                continue;
+
+            String description = readLine();
+            if (description == null) {
+                this.skipped++;
+                reportError(this.lineNumber, "missing description");
+                return null;
+            }
+
+            try {
+                return new Puzzle(details, description);
+            } catch (MalformedPuzzleException e) {
+                this.skipped++;
+                reportError(this.lineNumber - 1, e.getMessage());
+            }
+        }
+    }
+
+    private String readLine() {
+        try {
+            String line = this.reader.readLine();
+            if (line != null)
+                this.lineNumber++;
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reportError(long line, String message) {
+        if (this.errors.size() < MAX_REPORTED_ERRORS)
+            this.errors.add("line " + line + ": " + message);
+    }
+}
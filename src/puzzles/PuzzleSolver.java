@@ -0,0 +1,165 @@
+package puzzles;
+
+import bench.Percentiles;
+import core.Chess;
+import core.IllegalArrangementException;
+import core.Moves;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Solves many puzzles concurrently on a fork-join pool. Every puzzle is searched by one worker
+ * thread, with a search and a transposition table that the thread keeps for all of its puzzles.
+ */
+public class PuzzleSolver {
+    public static final int TABLE_SIZE_MB = 8;
+
+    /**
+     * The result of searching one puzzle.
+     */
+    public static final class Solution {
+        private final int index;
+        private final Puzzle puzzle;
+        private final SearchResult result;
+        private final long nanos;
+
+        private Solution(int index, Puzzle puzzle, SearchResult result, long nanos) {
+            this.index = index;
+            this.puzzle = puzzle;
+            this.result = result;
+            this.nanos = nanos;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Puzzle getPuzzle() {
+            return puzzle;
+        }
+
+        /**
+         * @return The search result, or null if the arrangement could not be set up.
+         */
+        public SearchResult getResult() {
+            return result;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String toString() {
+            if (result == null)
+                return index + ": invalid arrangement";
+
+            StringBuilder sb = new StringBuilder();
+            sb.append(index).append(": ");
+            if (result.getBestMove() == Moves.NONE)
+                sb.append("no legal move");
+            else {
+                for (int move : result.getPrincipalVariation())
+                    sb.append(Moves.toString(move)).append(' ');
+                if (result.isMate())
+                    sb.append("(mate in ").append(result.getMateDistance()).append(")");
+                else
+                    sb.append("(score ").append(result.getScore()).append(")");
+            }
+            sb.append(", ").append(nanos / 1_000_000).append(" ms");
+            return sb.toString();
+        }
+    }
+
+    private final SearchLimits limits;
+    private final int threads;
+    private final ThreadLocal<Search> searches;
+
+    public PuzzleSolver(SearchLimits limits, int threads) {
+        this.limits = limits;
+        this.threads = Math.max(1, threads);
+        this.searches = ThreadLocal.withInitial(() -> new Search(new TranspositionTable(TABLE_SIZE_MB)));
+    }
+
+    public PuzzleSolver(SearchLimits limits) {
+        this(limits, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Solves every puzzle of the database.
+     * @return One solution per puzzle, in database order.
+     */
+    public List<Solution> solveAll(PuzzleDatabase database) {
+        ArrayList<Callable<Solution>> tasks = new ArrayList<>();
+        for (int i = 0; i < database.getSize(); i++) {
+            int index = i;
+            Puzzle puzzle = database.getPuzzle(i);
+            tasks.add(() -> solve(index, puzzle));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        ArrayList<Solution> solutions = new ArrayList<>();
+        try {
+            for (Future<Solution> future : pool.invokeAll(tasks))
+                solutions.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return solutions;
+    }
+
+    private Solution solve(int index, Puzzle puzzle) {
+        long start = System.nanoTime();
+        try {
+            Chess chess = new Chess(puzzle.getArrangement(), puzzle.getTurn());
+            SearchResult result = this.searches.get().search(chess, this.limits);
+            return new Solution(index, puzzle, result, System.nanoTime() - start);
+        } catch (IllegalArrangementException e) {
+            return new Solution(index, puzzle, null, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Solves every puzzle of the database and prints the solutions, followed by the throughput
+     * and the latency percentiles.
+     */
+    public void run(PuzzleDatabase database) {
+        long start = System.nanoTime();
+        List<Solution> solutions = solveAll(database);
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = new long[solutions.size()];
+        long nodes = 0;
+        for (int i = 0; i < solutions.size(); i++) {
+            Solution solution = solutions.get(i);
+            System.out.println(solution);
+            latencies[i] = solution.getNanos();
+            if (solution.getResult() != null)
+                nodes += solution.getResult().getNodes();
+        }
+        Arrays.sort(latencies);
+
+        System.out.println();
+        System.out.println("Puzzles: " + solutions.size() + " on " + this.threads + " threads, "
+                + "limits: " + this.limits);
+        System.out.println("Time: " + elapsed / 1_000_000 + " ms");
+        System.out.printf("Throughput: %.1f puzzles/s, %d nodes/s%n",
+                solutions.size() / (elapsed / 1e9), (long) (nodes / (elapsed / 1e9)));
+        if (latencies.length > 0)
+            System.out.println("Latency: p50 " + Percentiles.of(latencies, 50) / 1_000_000
+                    + " ms, p99 " + Percentiles.of(latencies, 99) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,186 @@
+package puzzles;
+
+import core.Chess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Read-only binary puzzle database, memory-mapped so that opening it costs next to nothing and
+ * any puzzle can be decoded on its own.
+ * <p>
+ * The file consists of a header, one fixed-width record per puzzle, an index of description
+ * offsets and a heap with the UTF-8 descriptions:
+ * <pre>
+ * header   magic (int), puzzle count (int), heap position (int), reserved (int)
+ * record   32 bytes with two 4-bit piece codes each, turn, difficulty, flags, reserved
+ * index    count + 1 offsets into the heap (int each)
+ * heap     descriptions, back to back
+ * </pre>
+ * Piece codes are positions in PIECE_SYMBOLS; kings that have already moved (L and l) are
+ * stored as K and k with a flag, since there is only one of each. Characters that are not
+ * pieces are stored as empty squares.
+ */
+public class PuzzleStore {
+    public static final int MAGIC = 0x43505A31;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 36;
+
+    private static final String PIECE_SYMBOLS = "-PNBRQKpnbrqkSs";
+    private static final int TURN = 32;
+    private static final int DIFFICULTY = 33;
+    private static final int FLAGS = 34;
+    private static final int WHITE_KING_MOVED = 1;
+    private static final int BLACK_KING_MOVED = 2;
+
+    private static final Chess.PieceColor[] TURNS = Chess.PieceColor.values();
+    private static final Puzzle.Difficulty[] DIFFICULTIES = Puzzle.Difficulty.values();
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int indexPosition;
+    private final int heapPosition;
+
+    /**
+     * Maps an existing store.
+     * @throws IOException If the file cannot be read or is not a puzzle store.
+     */
+    public PuzzleStore(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //a single mapping cannot be larger, and every position in the file is an int
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Puzzle store too large: " + path);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a puzzle store: " + path);
+        this.size = this.buffer.getInt(4);
+        this.heapPosition = this.buffer.getInt(8);
+
+        //a truncated or damaged file must not lead to reads past its end, so every position is
+        //checked against the length in long arithmetic, which cannot overflow
+        long length = this.buffer.capacity();
+        long indexPosition = HEADER_SIZE + (long) this.size * RECORD_SIZE;
+        if (this.size < 0 || this.heapPosition != indexPosition + 4L * (this.size + 1)
+                || this.heapPosition > length)
+            throw new IOException("Corrupted puzzle store: " + path);
+        this.indexPosition = (int) indexPosition;
+
+        //the description offsets start at 0, never decrease and end within the file
+        int offset = 0;
+        for (int i = 0; i <= this.size; i++) {
+            int next = this.buffer.getInt(this.indexPosition + 4 * i);
+            if (i == 0 ? next != 0 : next < offset)
+                throw new IOException("Corrupted puzzle store: " + path);
+            offset = next;
+        }
+        if (this.heapPosition + (long) offset > length)
+            throw new IOException("Corrupted puzzle store: " + path);
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Decodes one puzzle straight from the mapped file.
+     */
+    public Puzzle getPuzzle(int i) {
+        if (i < 0 || i >= this.size)
+            throw new IndexOutOfBoundsException("Puzzle " + i + " of " + this.size);
+
+        int record = HEADER_SIZE + i * RECORD_SIZE;
+        int flags = this.buffer.get(record + FLAGS);
+        char[] arrangement = new char[Chess.BOARD_RANKS * Chess.BOARD_FILES];
+        for (int j = 0; j < TURN; j++) {
+            int b = this.buffer.get(record + j);
+            arrangement[2 * j] = symbol(b >>> 4 & 0xF, flags);
+            arrangement[2 * j + 1] = symbol(b & 0xF, flags);
+        }
+
+        int start = this.buffer.getInt(this.indexPosition + 4 * i);
+        int end = this.buffer.getInt(this.indexPosition + 4 * (i + 1));
+        byte[] description = new byte[end - start];
+        this.buffer.get(this.heapPosition + start, description);
+
+        return new Puzzle(new String(arrangement),
+                TURNS[this.buffer.get(record + TURN)],
+                DIFFICULTIES[this.buffer.get(record + DIFFICULTY)],
+                new String(description, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the puzzles, in the given order, as a new store.
+     */
+    public static void write(List<Puzzle> puzzles, Path path) throws IOException {
+        byte[][] descriptions = new byte[puzzles.size()][];
+        for (int i = 0; i < puzzles.size(); i++)
+            descriptions[i] = puzzles.get(i).getDescription().getBytes(StandardCharsets.UTF_8);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path.toFile()), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(puzzles.size());
+            out.writeInt(HEADER_SIZE + puzzles.size() * RECORD_SIZE + 4 * (puzzles.size() + 1));
+            out.writeInt(0);
+
+            byte[] record = new byte[RECORD_SIZE];
+            for (Puzzle puzzle : puzzles) {
+                encode(puzzle, record);
+                out.write(record);
+            }
+
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] description : descriptions) {
+                offset += description.length;
+                out.writeInt(offset);
+            }
+            for (byte[] description : descriptions)
+                out.write(description);
+        }
+    }
+
+    private static void encode(Puzzle puzzle, byte[] record) {
+        String arrangement = puzzle.getArrangement();
+        int flags = 0;
+        for (int j = 0; j < TURN; j++)
+            record[j] = (byte) (nibble(arrangement.charAt(2 * j)) << 4 | nibble(arrangement.charAt(2 * j + 1)));
+        if (arrangement.indexOf('L') >= 0)
+            flags |= WHITE_KING_MOVED;
+        if (arrangement.indexOf('l') >= 0)
+            flags |= BLACK_KING_MOVED;
+
+        record[TURN] = (byte) puzzle.getTurn().ordinal();
+        record[DIFFICULTY] = (byte) puzzle.getDifficulty().ordinal();
+        record[FLAGS] = (byte) flags;
+        record[FLAGS + 1] = 0;
+    }
+
+    private static int nibble(char c) {
+        if (c == 'L')
+            c = 'K';
+        else if (c == 'l')
+            c = 'k';
+        int code = PIECE_SYMBOLS.indexOf(c);
+        return code < 0 ? 0 : code;
+    }
+
+    private static char symbol(int nibble, int flags) {
+        char c = nibble < PIECE_SYMBOLS.length() ? PIECE_SYMBOLS.charAt(nibble) : '-';
+        if (c == 'K' && (flags & WHITE_KING_MOVED) != 0)
+            return 'L';
+        if (c == 'k' && (flags & BLACK_KING_MOVED) != 0)
+            return 'l';
+        return c;
+    }
+}
@@ -0,0 +1,333 @@
+package server;
+
+import bench.Percentiles;
+import core.Board;
+import core.Chess;
+import core.Fen;
+import core.IllegalArrangementException;
+import core.Move;
+import core.Moves;
+import core.Position;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hosts many games at once over a line-based TCP protocol. Every connection is served by its
+ * own thread, and every game has its own lock, so a slow client only holds up the games it is
+ * playing. Any client may play any game by its id.
+ * <p>
+ * Requests and their answers, one line each; failures are answered with "ERR &lt;reason&gt;".
+ * Squares and promotion letters may be written in either case:
+ * <pre>
+ * NEW [&lt;fen&gt;]                          OK &lt;id&gt;
+ * MOVE &lt;id&gt; &lt;from&gt; &lt;to&gt; [Q|R|B|N]       OK &lt;status&gt;
+ * GO &lt;id&gt; &lt;milliseconds&gt;                OK &lt;status&gt; &lt;from&gt; &lt;to&gt; [Q|R|B|N]   (the engine moves)
+ * FEN &lt;id&gt;                              OK &lt;fen&gt;
+ * STATUS &lt;id&gt;                           OK &lt;status&gt; &lt;side to move&gt;
+ * CLOSE &lt;id&gt;                            OK
+ * STATS                                 OK games ... moves ... moves/s ... p50 ... p99 ...
+ * QUIT                                  (closes the connection)
+ * </pre>
+ */
+public class GameServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+    //the latencies of the most recent moves, for the percentiles reported by STATS
+    public static final int LATENCY_SAMPLES = 1 << 16;
+    //how long a request waits for a game that another client is using
+    public static final long LOCK_TIMEOUT_MILLIS = 1000;
+    //an engine move keeps one of the few engines busy, so it is meant for quick games
+    public static final long MAX_ENGINE_MILLIS = 500;
+    public static final int ENGINE_TABLE_SIZE_MB = 1;
+
+    private static final class Game {
+        private final Chess chess;
+        private final ReentrantLock lock = new ReentrantLock();
+        //counts the moves played here, so that an engine move notices moves made during its search
+        private long version;
+
+        private Game(Chess chess) {
+            this.chess = chess;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final ConcurrentHashMap<Long, Game> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    //searches are bound by the processors, so one engine per processor serves every game
+    private final BlockingQueue<Search> engines;
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong latencyCount = new AtomicLong();
+
+    public GameServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "game-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.engines = new ArrayBlockingQueue<>(processors);
+        for (int i = 0; i < processors; i++)
+            this.engines.add(new Search(new TranspositionTable(ENGINE_TABLE_SIZE_MB)));
+    }
+
+    /**
+     * @return The port the server listens on, useful when it was created with port 0.
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void run() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed())
+                    System.out.println("Cannot accept a connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accepts connections on a background thread.
+     */
+    public void start() {
+        Thread acceptor = new Thread(this::run, "game-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void close() throws IOException {
+        this.serverSocket.close();
+        this.connections.shutdownNow();
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equalsIgnoreCase("QUIT"))
+                    break;
+                if (line.isEmpty())
+                    continue;
+                out.write(handle(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (SocketException e) {
+            //the client went away
+        } catch (IOException e) {
+            System.out.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes one request of the protocol.
+     * @return The answer, without the line break.
+     */
+    public String handle(String request) {
+        String[] words = request.split("\\s+");
+        try {
+            switch (words[0].toUpperCase()) {
+                case "NEW":
+                    return newGame(words.length > 1 ? request.substring(request.indexOf(' ') + 1).trim() : null);
+                case "MOVE":
+                    if (words.length < 4)
+                        return "ERR usage: MOVE <id> <from> <to> [Q|R|B|N]";
+                    return move(game(words[1]), words[2], words[3], words.length > 4 ? words[4] : null);
+                case "GO":
+                    if (words.length < 3)
+                        return "ERR usage: GO <id> <milliseconds>";
+                    return engineMove(game(words[1]), Math.min(Long.parseLong(words[2]), MAX_ENGINE_MILLIS));
+                case "FEN":
+                    return withGame(words, game -> "OK " + Fen.toFen(game.chess));
+                case "STATUS":
+                    return withGame(words, game -> "OK " + game.chess.getGameStatus() + " " + game.chess.getTurn());
+                case "CLOSE":
+                    if (words.length < 2)
+                        return "ERR usage: CLOSE <id>";
+                    return this.games.remove(Long.parseLong(words[1])) != null ? "OK" : "ERR no such game";
+                case "STATS":
+                    return "OK " + getStatistics();
+                default:
+                    return "ERR unknown request " + words[0];
+            }
+        } catch (NumberFormatException e) {
+            return "ERR malformed number";
+        } catch (NoSuchGameException e) {
+            return "ERR no such game";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERR interrupted";
+        }
+    }
+
+    /**
+     * @return The number of games, the moves played since the start, and the latency
+     * percentiles of the most recent moves in microseconds.
+     */
+    public String getStatistics() {
+        double seconds = Math.max((System.nanoTime() - this.startNanos) / 1e9, 1e-9);
+        int samples = (int) Math.min(this.latencyCount.get(), LATENCY_SAMPLES);
+        long[] sorted = new long[samples];
+        for (int i = 0; i < samples; i++)
+            sorted[i] = this.latencies.get(i);
+        Arrays.sort(sorted);
+        return String.format("games %d moves %d moves/s %.0f p50 %dus p99 %dus",
+                this.games.size(), this.moves.get(), this.moves.get() / seconds,
+                Percentiles.of(sorted, 50) / 1000, Percentiles.of(sorted, 99) / 1000);
+    }
+
+    private String newGame(String fen) {
+        Chess chess;
+        try {
+            chess = fen == null ? new Chess() : Fen.parse(fen);
+        } catch (IllegalArrangementException e) {
+            return "ERR " + e.getMessage();
+        }
+        long id = this.nextId.getAndIncrement();
+        this.games.put(id, new Game(chess));
+        return "OK " + id;
+    }
+
+    private String move(Game game, String from, String to, String promotion) throws InterruptedException {
+        Position origin = Position.generateFromString(from);
+        Position destination = Position.generateFromString(to);
+        int promotionType = promotion == null ? Board.NO_PIECE : Moves.promotionOf(promotion);
+        if (origin == null || destination == null || (promotion != null && promotionType == Board.NO_PIECE))
+            return "ERR illegal move";
+
+        long start = System.nanoTime();
+        if (!game.lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            return "ERR game busy";
+        try {
+            if (game.chess.isGameOver())
+                return "ERR game over";
+            if (!game.chess.performMove(new Move(origin, destination, promotionType)))
+                return "ERR illegal move";
+            game.version++;
+            recordMove(System.nanoTime() - start);
+            return "OK " + game.chess.getGameStatus();
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    /**
+     * Searches a snapshot of the game without holding its lock, so that the game stays available
+     * to other requests, and plays the move found unless the game has moved on meanwhile.
+     */
+    private String engineMove(Game game, long millis) throws InterruptedException {
+        Chess snapshot;
+        long version;
+        if (!game.lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            return "ERR game busy";
+        try {
+            if (game.chess.isGameOver())
+                return "ERR game over";
+            snapshot = new Chess(game.chess);
+            version = game.version;
+        } finally {
+            game.lock.unlock();
+        }
+
+        Search engine = this.engines.take();
+        SearchResult result;
+        try {
+            result = engine.search(snapshot, SearchLimits.time(Math.max(1, millis)));
+        } finally {
+            this.engines.add(engine);
+        }
+        Move move = result.getMove();
+        if (move == null)
+            return "ERR no move";
+
+        if (!game.lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            return "ERR game busy";
+        try {
+            if (game.version != version)
+                return "ERR game changed";
+            if (!game.chess.performMove(move))
+                return "ERR no move";
+            game.version++;
+            this.moves.incrementAndGet();
+            //answered in the form MOVE takes, so clients can replay it
+            String answer = "OK " + game.chess.getGameStatus() + " " + move.getOrigin() + " " + move.getDestination();
+            if (move.getPromotion() != Board.NO_PIECE)
+                answer += " " + Board.letterOf(move.getPromotion());
+            return answer;
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    private interface GameRequest {
+        String apply(Game game);
+    }
+
+    private String withGame(String[] words, GameRequest request) throws InterruptedException {
+        if (words.length < 2)
+            return "ERR usage: " + words[0].toUpperCase() + " <id>";
+        Game game = game(words[1]);
+        if (!game.lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            return "ERR game busy";
+        try {
+            return request.apply(game);
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    private Game game(String id) {
+        Game game = this.games.get(Long.parseLong(id));
+        if (game == null)
+            throw new NoSuchGameException();
+        return game;
+    }
+
+    private void recordMove(long nanos) {
+        this.moves.incrementAndGet();
+        this.latencies.set((int) (this.latencyCount.getAndIncrement() & (LATENCY_SAMPLES - 1)), nanos);
+    }
+
+    private static class NoSuchGameException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,145 @@
+package server;
+
+import bench.Percentiles;
+import core.Board;
+import core.Chess;
+import core.IllegalArrangementException;
+import core.MoveList;
+import core.Moves;
+import core.Position;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays random games against a GameServer from many connections at once and reports the
+ * throughput and round-trip latency of the moves as seen by the clients. Every client keeps
+ * its own copy of the game to pick legal moves, and starts a new game when one ends.
+ */
+public class LoadGenerator {
+    //the round trips each client keeps for the percentiles
+    public static final int SAMPLES_PER_CLIENT = 1 << 14;
+
+    private final String host;
+    private final int port;
+    private final int clients;
+
+    public LoadGenerator(String host, int port, int clients) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+    }
+
+    /**
+     * Runs every client for the given time and prints the results.
+     * @return The number of moves the server accepted.
+     */
+    public long run(long seconds) {
+        ExecutorService pool = Executors.newFixedThreadPool(this.clients, runnable -> {
+            Thread thread = new Thread(runnable, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < this.clients; i++) {
+            long seed = i;
+            results.add(pool.submit(() -> play(deadline, new Random(seed))));
+        }
+
+        long moves = 0;
+        long[] all = new long[0];
+        int failed = 0;
+        for (Future<long[]> result : results) {
+            try {
+                long[] latencies = result.get();
+                moves += latencies[0];
+                int start = all.length;
+                all = Arrays.copyOf(all, start + latencies.length - 1);
+                System.arraycopy(latencies, 1, all, start, latencies.length - 1);
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        pool.shutdownNow();
+
+        Arrays.sort(all);
+        System.out.printf("%d clients, %d moves in %d s: %.0f moves/s, p50 %d us, p99 %d us%n",
+                this.clients, moves, seconds, moves / (double) seconds,
+                Percentiles.of(all, 50) / 1000, Percentiles.of(all, 99) / 1000);
+        if (failed > 0)
+            System.out.println(failed + " clients failed");
+        return moves;
+    }
+
+    /**
+     * @return The number of accepted moves followed by the sampled round trips in nanoseconds.
+     */
+    private long[] play(long deadline, Random random) throws IOException, IllegalArrangementException {
+        long[] samples = new long[SAMPLES_PER_CLIENT];
+        long moves = 0;
+        MoveList legal = new MoveList();
+        try (Socket socket = new Socket(this.host, this.port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            String id = null;
+            Chess chess = null;
+            while (System.nanoTime() < deadline) {
+                if (chess == null || chess.isGameOver()) {
+                    if (id != null)
+                        request(in, out, "CLOSE " + id);
+                    id = request(in, out, "NEW").substring(3);
+                    chess = new Chess();
+                }
+                chess.generateLegalMoves(legal);
+                int move = legal.get(random.nextInt(legal.size()));
+                String command = "MOVE " + id + " " + Position.fromSquare(Moves.getOrigin(move))
+                        + " " + Position.fromSquare(Moves.getDestination(move));
+                if (Moves.getFlags(move) == Moves.PROMOTION)
+                    command += " " + Board.letterOf(Moves.getPromotion(move));
+
+                long start = System.nanoTime();
+                String answer = request(in, out, command);
+                long elapsed = System.nanoTime() - start;
+                if (!answer.startsWith("OK"))
+                    throw new IOException("Move refused: " + command + " -> " + answer);
+                chess.performMove(Moves.toMove(move));
+                samples[(int) (moves % SAMPLES_PER_CLIENT)] = elapsed;
+                moves++;
+            }
+            if (id != null)
+                request(in, out, "CLOSE " + id);
+            out.write("QUIT\n");
+            out.flush();
+        }
+        long[] result = new long[1 + (int) Math.min(moves, SAMPLES_PER_CLIENT)];
+        result[0] = moves;
+        System.arraycopy(samples, 0, result, 1, result.length - 1);
+        return result;
+    }
+
+    private static String request(BufferedReader in, Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String answer = in.readLine();
+        if (answer == null)
+            throw new IOException("Connection closed");
+        return answer;
+    }
+}